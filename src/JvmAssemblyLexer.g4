@@ -185,8 +185,9 @@ STRING
     : '"' -> more, pushMode(M_STRING)
     ;
 
+// Takes in any blank or comment-only lines that follow, which the parser would otherwise see as extra newlines
 CODE_NEWLINE
-    : [\r\n]+
+    : [\r\n] ([ \t]* (';' ~[\r\n]*)? [\r\n])*
     ;
 
 CODE_WS
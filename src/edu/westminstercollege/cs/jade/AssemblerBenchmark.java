@@ -0,0 +1,96 @@
+package edu.westminstercollege.cs.jade;
+
+import edu.westminstercollege.cs.jade.assembler.Assembler;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+
+/**
+ * Times the assembler on generated classes with increasing numbers of distinct constant pool references. Each
+ * reference is a getstatic of a different field, which adds three constants (name, NameAndType and Fieldref), so
+ * the time per reference should stay flat as the pool grows.
+ *
+ * <p>The front end can be chosen with a second argument (HandWritten or Antlr). The first assembly is timed separately
+ * as the cold start, which is dominated by class loading and, for ANTLR, deserializing the ATN; run the benchmark once
+ * per front end to compare them. With a third argument {@code warm}, {@link Assembler#warmUp} is called and timed
+ * first, and the cold start is what is left after it.</p>
+ */
+public class AssemblerBenchmark {
+
+    private static final int REFERENCES_PER_METHOD = 1000;
+    private static final int SMALL_FILES = 2000;
+    private static final int SMALL_REFERENCES = 10;
+
+    static String generate(int references) {
+        var source = new StringBuilder("""
+                .class public Generated
+                .super java/lang/Object
+                """);
+        for (int m = 0; m * REFERENCES_PER_METHOD < references; ++m) {
+            source.append(".method public static m").append(m).append(" ()V\n")
+                    .append(".code\n")
+                    .append("    .limit locals 0\n")
+                    .append("    .limit stack 1\n");
+            for (int i = m * REFERENCES_PER_METHOD; i < Math.min(references, (m + 1) * REFERENCES_PER_METHOD); ++i)
+                source.append("    getstatic Fields/f").append(i).append(" I\n")
+                        .append("    pop\n");
+            source.append("    return\n")
+                    .append(".end code\n");
+        }
+        return source.toString();
+    }
+
+    public static void main(String... args) throws IOException, SyntaxException {
+        int[] sizes = { 1000, 2000, 4000, 8000, 16000 };
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        var frontEnd = args.length > 1 ? Assembler.FrontEnd.valueOf(args[1]) : Assembler.FrontEnd.HandWritten;
+        boolean warm = args.length > 2 && args[2].equals("warm");
+        var buffer = ByteBuffer.allocate(1 << 22);
+
+        if (warm) {
+            long warmUp = System.nanoTime();
+            Assembler.warmUp(frontEnd);
+            System.out.printf("%s front end, warm-up: %.1f ms\n", frontEnd, (System.nanoTime() - warmUp) / 1e6);
+        }
+
+        var first = generate(sizes[0]);
+        long coldStart = System.nanoTime();
+        new Assembler(frontEnd).assemble(new StringReader(first), buffer);
+        System.out.printf("%s front end, cold start: %.1f ms\n", frontEnd, (System.nanoTime() - coldStart) / 1e6);
+
+        // Warm up
+        for (int i = 0; i < rounds; ++i) {
+            buffer.clear();
+            new Assembler(frontEnd).assemble(new StringReader(generate(sizes[sizes.length / 2])), buffer);
+        }
+
+        System.out.printf("%10s %10s %12s %14s %12s\n", "references", "bytes", "time (ms)", "ns/reference", "source MB/s");
+        for (int size : sizes) {
+            var source = generate(size);
+            long best = Long.MAX_VALUE;
+            for (int i = 0; i < rounds; ++i) {
+                buffer.clear();
+                long start = System.nanoTime();
+                new Assembler(frontEnd).assemble(new StringReader(source), buffer);
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            System.out.printf("%10d %10d %12.1f %14.0f %12.1f\n", size, buffer.position(), best / 1e6,
+                    (double)best / size, source.length() / (best / 1e9) / 1e6);
+        }
+
+        // Many small classes, as in a build, where per-assembly setup dominates
+        var small = generate(SMALL_REFERENCES);
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < rounds; ++i) {
+            long start = System.nanoTime();
+            for (int j = 0; j < SMALL_FILES; ++j) {
+                buffer.clear();
+                new Assembler(frontEnd).assemble(new StringReader(small), buffer);
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf("%d classes of %d references: %.1f ms, %.0f us/class\n", SMALL_FILES, SMALL_REFERENCES,
+                best / 1e6, best / 1e3 / SMALL_FILES);
+    }
+}
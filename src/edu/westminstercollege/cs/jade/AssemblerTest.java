@@ -6,7 +6,6 @@ import org.antlr.v4.runtime.CommonTokenStream;
 
 import java.io.IOException;
 import java.io.StringReader;
-import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
@@ -43,11 +42,9 @@ public class AssemblerTest {
             """;
 
     public static void main(String... args) throws IOException, SyntaxException {
-       try (var channel = Files.newByteChannel(Path.of("Test.class"), StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE)) {
-           var buffer = ((FileChannel)channel).map(FileChannel.MapMode.READ_WRITE, 0, 65536 /* ??? */);
+       try (var channel = Files.newByteChannel(Path.of("Test.class"), StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
            var assembler = new Assembler();
-           assembler.assemble(new StringReader(CODE), buffer);
-           channel.truncate(buffer.position());
+           assembler.assemble(new StringReader(CODE), channel);
        }
     }
 }
@@ -14,6 +14,31 @@ import java.nio.file.StandardOpenOption;
 public class ClassfileReader {
 
     public Classfile read(ByteBuffer bytes) throws InvalidClassException, UnsupportedClassFeatureException {
+        var header = readHeader(bytes);
+
+        Field[] fields = readFields(bytes);
+        Method[] methods = readMethods(bytes);
+        Attribute[] attributes = readAttributes(bytes);
+
+        if (bytes.position() != bytes.limit())
+            throw new InvalidClassException("Classfile has trailing bytes");
+
+        return new Classfile(
+                header.minorVersion(), header.majorVersion(),
+                header.constantPool(),
+                header.accessFlags(),
+                header.thisClass(), header.superClass(),
+                header.interfaces(),
+                fields, methods,
+                attributes
+        );
+    }
+
+    /**
+     * Reads a class up to and including its interfaces, leaving the buffer positioned at the field count. Much
+     * cheaper than {@link #read} for tools that only need names and supertypes.
+     */
+    public ClassHeader readHeader(ByteBuffer bytes) throws InvalidClassException, UnsupportedClassFeatureException {
         bytes.order(ByteOrder.BIG_ENDIAN);
 
         if (bytes.getInt() != 0xCAFEBABE) {
@@ -26,30 +51,22 @@ public class ClassfileReader {
         var constantPool = readConstantPool(bytes);
 
         int accessFlags = bytes.getShort();
-        int thisClass = bytes.getShort();
-        int superClass = bytes.getShort();
+        int thisClass = bytes.getShort() & 0xffff;
+        int superClass = bytes.getShort() & 0xffff;
 
         int[] interfaces = readInterfaces(bytes);
-        Field[] fields = readFields(bytes);
-        Method[] methods = readMethods(bytes);
-        Attribute[] attributes = readAttributes(bytes);
-
-        if (bytes.position() != bytes.limit())
-            throw new InvalidClassException("Classfile has trailing bytes");
 
-        return new Classfile(
+        return new ClassHeader(
                 minorVersion, majorVersion,
                 new ConstantPool(constantPool),
                 accessFlags,
                 thisClass, superClass,
-                interfaces,
-                fields, methods,
-                attributes
+                interfaces
         );
     }
 
     public Constant[] readConstantPool(ByteBuffer bytes) throws InvalidClassException, UnsupportedClassFeatureException {
-        int count = bytes.getShort();
+        int count = bytes.getShort() & 0xffff;
         if (count < 1)
             throw new InvalidClassException(String.format("Invalid constant pool count: %d", count));
 
@@ -68,7 +85,7 @@ public class ClassfileReader {
         int tag = bytes.get();
         return switch (tag) {
             case 1 -> {
-                int length = bytes.getShort();
+                int length = bytes.getShort() & 0xffff;
                 byte[] utf8 = new byte[length];
                 bytes.get(utf8);
                 yield new Constant.Utf8(new String(utf8, StandardCharsets.UTF_8));
@@ -104,7 +121,7 @@ public class ClassfileReader {
 
         int[] interfaces = new int[count];
         for (int i = 0; i < count; ++i)
-            interfaces[i] = bytes.getShort();
+            interfaces[i] = bytes.getShort() & 0xffff;
 
         return interfaces;
     }
@@ -13,47 +13,137 @@ import edu.westminstercollege.cs.jade.util.Bitmask;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 public class Disassembler {
 
+    /**
+     * Version of the disassembly output format; change whenever the output changes so that cached output is not reused.
+     */
+    public static final String VERSION = "2";
+
     private Classfile cf;
     private ConstantPool cp;
+    private Annotator annotator;
+
+    /**
+     * Supplies extra information (e.g. from a profiler or JIT log) to print alongside methods and instructions, as
+     * assembly comments. Either method may return null for nothing.
+     */
+    public interface Annotator {
+
+        default String methodNote(String className, String methodName, String descriptor) {
+            return null;
+        }
+
+        default String instructionNote(String className, String methodName, String descriptor, int bci) {
+            return null;
+        }
+    }
 
     public Disassembler(Classfile cf) {
         this.cf = cf;
         this.cp = cf.constantPool();
     }
 
+    public Disassembler(Classfile cf, Annotator annotator) {
+        this(cf);
+        this.annotator = annotator;
+    }
+
     public void disassemble(OutputStream out) throws InvalidClassException {
         disassemble(new PrintWriter(out));
     }
 
     public void disassemble(PrintWriter out) throws InvalidClassException {
         try {
-            printSourceFile(out);
-            printClass(out);
-            printSuperclass(out);
-            printSuperinterfaces(out);
+            printHeader(out);
+            printMethods(out);
+        } finally {
+            out.flush();
+        }
+    }
 
-            out.println();
+    /**
+     * Disassembles the class, reusing the text of any method whose fingerprint matches a method in a previous result
+     * (typically from an earlier version of the same class). Only changed methods are rendered again. The text of the
+     * result is identical to what {@link #disassemble(PrintWriter)} would print.
+     */
+    public Result disassemble(Result previous) throws InvalidClassException {
+        var header = new StringWriter();
+        var headerOut = new PrintWriter(header);
+        printHeader(headerOut);
+        headerOut.flush();
+
+        Map<Long, String> previousMethods = new HashMap<>();
+        // Annotations can change independently of the class, so annotated text is never reused
+        if (previous != null && annotator == null) {
+            for (var method : previous.methods())
+                previousMethods.put(method.fingerprint(), method.text());
+        }
 
-            printFields(out);
+        List<Result.MethodText> methods = new ArrayList<>(cf.methods().length);
+        int reused = 0;
+        for (var method : cf.methods()) {
+            long fingerprint = Fingerprints.method(method, cp);
+            var text = previousMethods.get(fingerprint);
+            if (text != null)
+                ++reused;
+            else {
+                var methodText = new StringWriter();
+                var methodOut = new PrintWriter(methodText);
+                printMethod(methodOut, method);
+                methodOut.println();
+                methodOut.flush();
+                text = methodText.toString();
+            }
+            methods.add(new Result.MethodText(fingerprint, text));
+        }
 
-            if (cf.fields().length > 0)
-                out.println();
+        return new Result(header.toString(), methods, reused);
+    }
 
-            printMethods(out);
-        } finally {
+    public record Result(String header, List<MethodText> methods, int reusedMethods) {
+
+        public record MethodText(long fingerprint, String text) {}
+
+        public void writeTo(PrintWriter out) {
+            out.print(header);
+            for (var method : methods)
+                out.print(method.text());
             out.flush();
         }
+
+        @Override
+        public String toString() {
+            var text = new StringWriter();
+            writeTo(new PrintWriter(text));
+            return text.toString();
+        }
+    }
+
+    private void printHeader(PrintWriter out) throws InvalidClassException {
+        printSourceFile(out);
+        printClass(out);
+        printSuperclass(out);
+        printSuperinterfaces(out);
+
+        out.println();
+
+        printFields(out);
+
+        if (cf.fields().length > 0)
+            out.println();
     }
 
     private void printSourceFile(PrintWriter out) throws InvalidClassException {
@@ -172,7 +262,15 @@ public class Disassembler {
         if (modifiers.size() > 0)
             modString = " " + String.join(" ", modifiers);
 
-        out.printf(".method%s %s %s\n", modString, cp.string(method.nameIndex()), cp.string(method.descriptorIndex()));
+        var name = cp.string(method.nameIndex());
+        var descriptor = cp.string(method.descriptorIndex());
+        out.printf(".method%s %s %s\n", modString, name, descriptor);
+
+        if (annotator != null) {
+            var note = annotator.methodNote(className(), name, descriptor);
+            if (note != null)
+                out.printf("; %s\n", note);
+        }
 
         var maybeCode = getAttributeValue(method.attributes(), StandardAttributes.Code);
         if (maybeCode.isPresent()) {
@@ -181,12 +279,16 @@ public class Disassembler {
             out.printf(".limit stack %d\n", code.maxLocals());
             out.printf(".limit stack %d\n", code.maxStack());
 
-            printInstructions(out, code.code());
+            printInstructions(out, code.code(), name, descriptor);
 
             out.println(".end code");
         }
     }
 
+    private String className() {
+        return cp.string(cp.clazz(cf.thisClass()));
+    }
+
     private <T> Optional<T> getAttributeValue(Attribute[] attributes, StandardAttribute<T> attribute) throws InvalidClassException {
         for (var attr : attributes) {
             String attrName = cp.string(attr.nameIndex());
@@ -198,7 +300,8 @@ public class Disassembler {
         return Optional.empty();
     }
 
-    private void printInstructions(PrintWriter out, byte[] code) throws InvalidClassException {
+    private void printInstructions(PrintWriter out, byte[] code, String methodName, String descriptor) throws InvalidClassException {
+        var className = className();
         var b = ByteBuffer.wrap(code);
         boolean wide = false;
         while (b.position() < b.limit()) {
@@ -208,14 +311,19 @@ public class Disassembler {
             out.printf("    %-18s", instr.opcode().mnemonic());
             var operands = instr.operands();
             if (operands.size() > 0)
-                out.printf("    %s", String.join(" ", operands.stream().map(this::operandToString).toList()));
+                out.printf("    %s", String.join(" ", operands.stream().map(Disassembler::operandText).toList()));
+            if (annotator != null) {
+                var note = annotator.instructionNote(className, methodName, descriptor, pos);
+                if (note != null)
+                    out.printf("    ; %s", note);
+            }
             out.println();
 
             wide = (instr.opcode() == Opcode.WIDE);
         }
     }
 
-    private String operandToString(Operand op) {
+    public static String operandText(Operand op) {
         return switch (op) {
             case Operand.U8(int i) -> "" + i;
             case Operand.U16(int i) -> "" + i;
@@ -225,15 +333,18 @@ public class Disassembler {
             case Operand.Imm8.Integer(int i) -> "" + i;
             case Operand.Imm8.Float(float f) -> String.format("%ff", f);
             case Operand.Imm8.String(String s) -> String.format("\"%s\"", s);
+            case Operand.Imm8.Class(String name) -> name;
             case Operand.Imm16.Integer(int i) -> "" + i;
             case Operand.Imm16.Float(float f) -> String.format("%ff", f);
             case Operand.Imm16.String(String s) -> String.format("\"%s\"", s);
             case Operand.Imm16.Long(long l) -> String.format("%dL", l);
             case Operand.Imm16.Double(double d) -> "" + d;
+            case Operand.Imm16.Class(String name) -> name;
             case Operand.RefType(String name) -> name;
             case Operand.Field(String className, String fieldName, String descriptor) ->
                 String.format("%s/%s %s", className, fieldName, descriptor);
-            case Operand.DynamicCallSite() -> "~dynamic~";
+            case Operand.DynamicCallSite(int bootstrap, String name, String descriptor) ->
+                String.format("~dynamic~ #%d %s %s", bootstrap, name, descriptor);
             case Operand.Method(String className, String methodName, String descriptor) ->
                 String.format("%s/%s %s", className, methodName, descriptor);
             case Operand.LUT() -> "[LUT]";
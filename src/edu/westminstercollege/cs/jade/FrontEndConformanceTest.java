@@ -0,0 +1,302 @@
+package edu.westminstercollege.cs.jade;
+
+import edu.westminstercollege.cs.jade.assembler.Assembler;
+import edu.westminstercollege.cs.jade.assembler.AssemblerService;
+import edu.westminstercollege.cs.jade.assembler.Diagnostic;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Checks that the hand-written and ANTLR front ends agree: each input below must assemble without diagnostics to the
+ * same bytes with both, in batch and in streaming mode, as must {@link Assembler#warmUp}'s built-in class. Each
+ * malformed input must instead be reported through diagnostics on every path, including {@link AssemblerService},
+ * rather than by an exception.
+ */
+public class FrontEndConformanceTest {
+
+    private static final String HEADER = """
+            .class public Conformance
+            .super java/lang/Object
+            """;
+
+    private static final Map<String, String> INPUTS = new LinkedHashMap<>();
+
+    private static final Map<String, String> MALFORMED = new LinkedHashMap<>();
+
+    static {
+        INPUTS.put("comments", """
+                ; a comment before anything
+                .source Conformance.java ; after the file name
+                .class public Conformance ; after the class
+                .super java/lang/Object ; after the superclass
+                .field private static count I ; after a field
+                ; between members
+                .method public static main ([Ljava/lang/String;)V ; after a method
+                .code
+                    ; inside code
+                    .limit stack 1 ; after a limit
+                    iconst_0 ; after an instruction
+                    putstatic Conformance/count I
+                    return
+                .end code
+                ; at the end
+                """);
+
+        INPUTS.put("crlf", (HEADER + """
+                .field public value I
+                .method public static f ()I
+                .code
+                    .limit stack 1
+                    bipush 7
+
+                    ireturn
+                .end code
+                """).replace("\n", "\r\n"));
+
+        INPUTS.put("integers", HEADER + """
+                .method public static f ()V
+                .code
+                    .limit stack 2
+                    bipush -25
+                    pop
+                    bipush +25
+                    pop
+                    sipush 0x7fff
+                    pop
+                    sipush -32768
+                    pop
+                    ldc 0X7FFFFFFF
+                    pop
+                    ldc -2147483648
+                    pop
+                    ldc 100000
+                    pop
+                    ldc2_w 0L
+                    pop2
+                    ldc2_w -9223372036854775808L
+                    pop2
+                    ldc2_w 0xffffffffffffffffl
+                    pop2
+                    return
+                .end code
+                """);
+
+        INPUTS.put("floats and doubles", HEADER + """
+                .method public static f ()V
+                .code
+                    .limit stack 2
+                    ldc 2.5f
+                    pop
+                    ldc -.5F
+                    pop
+                    ldc 1e3f
+                    pop
+                    ldc2_w 1.5
+                    pop2
+                    ldc2_w -1.
+                    pop2
+                    ldc2_w -.1
+                    pop2
+                    ldc2_w +1.5
+                    pop2
+                    ldc2_w 1e5
+                    pop2
+                    ldc2_w -1E+05
+                    pop2
+                    return
+                .end code
+                """);
+
+        INPUTS.put("escaped strings", HEADER + """
+                .method public static f ()V
+                .code
+                    .limit stack 1
+                    ldc "plain"
+                    pop
+                    ldc ""
+                    pop
+                    ldc "Hi\\nthere!"
+                    pop
+                    ldc "Hi\\\\there!"
+                    pop
+                    ldc "quote \\" inside; not a comment"
+                    pop
+                    ldc "Hi\\u2346there!"
+                    pop
+                    ldc "Hi\\0there! \\377"
+                    pop
+                    return
+                .end code
+                """);
+
+        INPUTS.put("labels", HEADER + """
+                .method public static count (I)I
+                .code
+                    .limit stack 2
+                    .limit locals 2
+                    iconst_0
+                    istore_1
+                top:
+                    iload_0
+                    ifle done
+                    iinc 1 1
+                    iinc 0 -1
+                    goto top
+                done:
+
+                    iload_1
+                    ireturn
+                .end code
+                .method public static spin ()V
+                .code
+                    again: goto again
+                .end code
+                """);
+
+        INPUTS.put("no final newline", HEADER + """
+                .method public static f ()V
+                .code
+                    return
+                .end code""");
+
+        MALFORMED.put("redundant .implements", HEADER + """
+                .implements java/lang/Runnable
+                .implements java/lang/Runnable
+                """);
+        MALFORMED.put("byte out of range", method("bipush 300"));
+        MALFORMED.put("int out of range", method("ldc 99999999999"));
+        MALFORMED.put("hex int out of range", method("sipush 0x99999999999"));
+        MALFORMED.put("long out of range", method("ldc2_w 99999999999999999999L"));
+        MALFORMED.put("hex .limit", method(".limit stack 0x10"));
+        MALFORMED.put(".limit out of range", method(".limit stack 99999999999"));
+        MALFORMED.put("duplicate .limit locals", method(".limit locals 1\n.limit locals 2"));
+        MALFORMED.put("tableswitch", method("tableswitch 0"));
+        MALFORMED.put("lookupswitch", method("lookupswitch 0"));
+    }
+
+    private static String method(String code) {
+        return HEADER + """
+                .method public static f ()V
+                .code
+                %s
+                    return
+                .end code
+                """.formatted(code);
+    }
+
+    public static void main(String... args) throws IOException {
+        int failures = 0;
+        for (var input : INPUTS.entrySet()) {
+            List<byte[]> outputs = new ArrayList<>();
+            List<String> problems = new ArrayList<>();
+            for (var frontEnd : Assembler.FrontEnd.values()) {
+                for (boolean streaming : new boolean[] { false, true }) {
+                    var mode = frontEnd + (streaming ? " streaming" : " batch");
+                    List<Diagnostic> diagnostics = new ArrayList<>();
+                    var assembler = new Assembler(frontEnd, diagnostics::add);
+                    try {
+                        outputs.add(streaming
+                                ? assembleStreaming(assembler, input.getValue())
+                                : bytes(assembler.assemble(new StringReader(input.getValue()))));
+                    } catch (SyntaxException ex) {
+                        outputs.add(null);
+                    }
+                    for (var diagnostic : diagnostics)
+                        problems.add(String.format("%s: %s on line %d: %s", mode, diagnostic.severity(),
+                                diagnostic.line(), diagnostic.message()));
+                }
+            }
+
+            if (!allEqual(outputs))
+                problems.add("output differs between front ends or modes");
+            failures += report(input.getKey(), problems);
+        }
+
+        List<byte[]> warmUps = new ArrayList<>();
+        List<String> problems = new ArrayList<>();
+        for (var frontEnd : Assembler.FrontEnd.values()) {
+            try {
+                warmUps.add(bytes(Assembler.warmUp(frontEnd)));
+            } catch (RuntimeException ex) {
+                warmUps.add(null);
+                problems.add(frontEnd + ": " + ex.getMessage());
+            }
+        }
+        if (!allEqual(warmUps))
+            problems.add("output differs between front ends");
+        failures += report("warm-up source", problems);
+
+        for (var input : MALFORMED.entrySet())
+            failures += report(input.getKey(), checkMalformed(input.getValue()));
+
+        System.out.printf("%d of %d inputs failed\n", failures, INPUTS.size() + 1 + MALFORMED.size());
+        if (failures > 0)
+            System.exit(1);
+    }
+
+    private static List<String> checkMalformed(String source) {
+        List<String> problems = new ArrayList<>();
+        for (var frontEnd : Assembler.FrontEnd.values()) {
+            for (var mode : new String[] { "batch", "streaming", "service" }) {
+                var where = frontEnd + " " + mode;
+                List<Diagnostic> diagnostics = new ArrayList<>();
+                try {
+                    var assembler = new Assembler(frontEnd, diagnostics::add);
+                    switch (mode) {
+                        case "batch" -> assembler.assemble(new StringReader(source));
+                        case "streaming" -> assembleStreaming(assembler, source);
+                        default -> diagnostics.addAll(new AssemblerService(frontEnd, 1)
+                                .assemble("malformed", new StringReader(source)).diagnostics());
+                    }
+                } catch (SyntaxException ex) {
+                    // Reported through the diagnostics
+                } catch (IOException | RuntimeException ex) {
+                    problems.add(where + ": threw " + ex);
+                    continue;
+                }
+                if (diagnostics.isEmpty())
+                    problems.add(where + ": no diagnostic");
+            }
+        }
+        return problems;
+    }
+
+    private static byte[] assembleStreaming(Assembler assembler, String source) throws IOException, SyntaxException {
+        var out = new ByteArrayOutputStream();
+        assembler.assembleStreaming(new StringReader(source), Channels.newChannel(out));
+        return out.toByteArray();
+    }
+
+    private static byte[] bytes(ByteBuffer buffer) {
+        var bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
+    private static boolean allEqual(List<byte[]> outputs) {
+        for (var output : outputs)
+            if (output == null || !Arrays.equals(output, outputs.get(0)))
+                return false;
+        return true;
+    }
+
+    private static int report(String name, List<String> problems) {
+        if (problems.isEmpty()) {
+            System.out.printf("ok      %s\n", name);
+            return 0;
+        }
+        System.out.printf("FAILED  %s\n", name);
+        for (var problem : problems)
+            System.out.printf("        %s\n", problem);
+        return 1;
+    }
+}
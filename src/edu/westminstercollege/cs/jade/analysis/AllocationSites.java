@@ -0,0 +1,301 @@
+package edu.westminstercollege.cs.jade.analysis;
+
+import edu.westminstercollege.cs.jade.ClassfileReader;
+import edu.westminstercollege.cs.jade.InvalidClassException;
+import edu.westminstercollege.cs.jade.UnsupportedClassFeatureException;
+import edu.westminstercollege.cs.jade.classfile.Fingerprints;
+import edu.westminstercollege.cs.jade.classfile.instruction.Instruction;
+import edu.westminstercollege.cs.jade.classfile.instruction.Opcode;
+import edu.westminstercollege.cs.jade.classfile.instruction.Operand;
+import edu.westminstercollege.cs.jade.util.ClassEntries;
+import edu.westminstercollege.cs.jade.util.StringTable;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * An index of the places in a set of classes where objects get allocated: {@code new}, the array creation
+ * instructions, boxing calls and invokedynamic string concatenation.
+ *
+ * <p>Sites are kept in columns of ints sorted by allocated type, class, method and offset, with all strings in one
+ * sorted {@link StringTable}. Looking up a type is a binary search and narrowing to a package is a comparison of
+ * class ids, so queries don't touch any strings but the ones they return.</p>
+ */
+public final class AllocationSites {
+
+    public enum Kind {
+        New, NewArray, ANewArray, MultiANewArray, Boxing, StringConcat
+    }
+
+    /**
+     * A single allocation site. Types are internal names, with arrays written as e.g. {@code byte[]} or
+     * {@code java/lang/String[][]}.
+     */
+    public record Site(String className, String methodName, String descriptor, int bci, Kind kind, String type) {}
+
+    private static final int MAGIC = 0x4A41_4441; // "JADA"
+    private static final int VERSION = 1;
+
+    private static final Kind[] KINDS = Kind.values();
+
+    private final StringTable strings;
+    private final int[] types;
+    private final int[] classes;
+    // Methods are stored as "name descriptor"
+    private final int[] methods;
+    private final int[] bcis;
+    private final byte[] kinds;
+
+    private AllocationSites(StringTable strings, int[] types, int[] classes, int[] methods, int[] bcis, byte[] kinds) {
+        this.strings = strings;
+        this.types = types;
+        this.classes = classes;
+        this.methods = methods;
+        this.bcis = bcis;
+        this.kinds = kinds;
+    }
+
+    /**
+     * Indexes every class at the given locations, decoding classes in parallel.
+     */
+    public static AllocationSites build(List<String> locations) throws IOException {
+        List<Site> sites = new ArrayList<>();
+        for (var location : locations) {
+            try (var classes = ClassEntries.stream(location)) {
+                sites.addAll(classes.parallel().flatMap(AllocationSites::sites).toList());
+            }
+        }
+
+        Set<String> strings = new HashSet<>();
+        for (var site : sites) {
+            strings.add(site.type());
+            strings.add(site.className());
+            strings.add(site.methodName() + " " + site.descriptor());
+        }
+        var table = StringTable.of(strings);
+
+        int n = sites.size();
+        int[] types = new int[n], classes = new int[n], methods = new int[n], bcis = new int[n], kinds = new int[n];
+        for (int i = 0; i < n; ++i) {
+            var site = sites.get(i);
+            types[i] = table.indexOf(site.type());
+            classes[i] = table.indexOf(site.className());
+            methods[i] = table.indexOf(site.methodName() + " " + site.descriptor());
+            bcis[i] = site.bci();
+            kinds[i] = site.kind().ordinal();
+        }
+
+        var order = ColumnSort.order(types, classes, methods, bcis, kinds);
+
+        var index = new AllocationSites(table, new int[n], new int[n], new int[n], new int[n], new byte[n]);
+        for (int i = 0; i < n; ++i) {
+            int row = order[i];
+            index.types[i] = types[row];
+            index.classes[i] = classes[row];
+            index.methods[i] = methods[row];
+            index.bcis[i] = bcis[row];
+            index.kinds[i] = (byte)kinds[row];
+        }
+        return index;
+    }
+
+    private static Stream<Site> sites(ClassEntries.Entry entry) {
+        try {
+            var cf = new ClassfileReader().read(entry.buffer());
+            var cp = cf.constantPool();
+            var className = cp.string(cp.clazz(cf.thisClass()));
+
+            List<Site> sites = new ArrayList<>();
+            for (var method : cf.methods()) {
+                var code = Fingerprints.code(method, cp);
+                if (code == null)
+                    continue;
+                var name = cp.string(method.nameIndex());
+                var descriptor = cp.string(method.descriptorIndex());
+
+                var b = ByteBuffer.wrap(code.code());
+                boolean wide = false;
+                while (b.hasRemaining()) {
+                    int bci = b.position();
+                    var instr = Instruction.read(b, cp, wide);
+                    var operands = instr.operands();
+
+                    Kind kind = null;
+                    String type = null;
+                    switch (instr.opcode()) {
+                        case NEW -> {
+                            kind = Kind.New;
+                            type = ((Operand.RefType)operands.get(0)).text();
+                        }
+                        case NEWARRAY -> {
+                            kind = Kind.NewArray;
+                            type = ((Operand.AType)operands.get(0)).name() + "[]";
+                        }
+                        case ANEWARRAY -> {
+                            kind = Kind.ANewArray;
+                            type = arrayType("[" + elementDescriptor(((Operand.RefType)operands.get(0)).text()));
+                        }
+                        case MULTIANEWARRAY -> {
+                            kind = Kind.MultiANewArray;
+                            type = arrayType(((Operand.RefType)operands.get(0)).text());
+                        }
+                        case INVOKESTATIC -> {
+                            var target = (Operand.Method)operands.get(0);
+                            if (Boxing.isBoxing(target)) {
+                                kind = Kind.Boxing;
+                                type = target.className();
+                            }
+                        }
+                        case INVOKEDYNAMIC -> {
+                            var site = (Operand.DynamicCallSite)operands.get(0);
+                            if (site.name().equals("makeConcatWithConstants") || site.name().equals("makeConcat")) {
+                                kind = Kind.StringConcat;
+                                type = "java/lang/String";
+                            }
+                        }
+                        default -> {}
+                    }
+
+                    if (kind != null)
+                        sites.add(new Site(className, name, descriptor, bci, kind, type));
+                    wide = (instr.opcode() == Opcode.WIDE);
+                }
+            }
+            return sites.stream();
+        } catch (InvalidClassException | UnsupportedClassFeatureException | RuntimeException ex) {
+            System.err.printf("%s: %s\n", entry.name(), ex.getMessage());
+            return Stream.empty();
+        }
+    }
+
+    // anewarray's operand is a class name, or a descriptor if the element type is itself an array
+    private static String elementDescriptor(String name) {
+        return name.startsWith("[") ? name : "L" + name + ";";
+    }
+
+    // Turns an array descriptor like [[Ljava/lang/String; into java/lang/String[][]
+    private static String arrayType(String descriptor) {
+        int dimensions = 0;
+        while (dimensions < descriptor.length() && descriptor.charAt(dimensions) == '[')
+            ++dimensions;
+        var element = descriptor.substring(dimensions);
+        var type = new StringBuilder(switch (element) {
+            case "Z" -> "boolean";
+            case "B" -> "byte";
+            case "C" -> "char";
+            case "S" -> "short";
+            case "I" -> "int";
+            case "J" -> "long";
+            case "F" -> "float";
+            case "D" -> "double";
+            default -> element.startsWith("L") && element.endsWith(";")
+                    ? element.substring(1, element.length() - 1)
+                    : element;
+        });
+        type.append("[]".repeat(dimensions));
+        return type.toString();
+    }
+
+    public int size() {
+        return types.length;
+    }
+
+    /**
+     * Returns the sites allocating a given type (in internal form; dots are accepted too) within a package and its
+     * subpackages. Either may be null to match everything.
+     */
+    public List<Site> find(String type, String packageName) {
+        int start = 0, end = types.length;
+        if (type != null) {
+            int typeId = strings.indexOf(type.replace('.', '/'));
+            if (typeId < 0)
+                return List.of();
+            start = lowerBound(typeId);
+            end = lowerBound(typeId + 1);
+        }
+
+        int firstClass = 0, lastClass = strings.size();
+        if (packageName != null && !packageName.isEmpty()) {
+            var range = strings.prefixRange(packageName.replace('.', '/') + "/");
+            firstClass = range[0];
+            lastClass = range[1];
+        }
+
+        List<Site> found = new ArrayList<>();
+        for (int i = start; i < end; ++i) {
+            if (classes[i] < firstClass || classes[i] >= lastClass)
+                continue;
+            var method = strings.get(methods[i]);
+            int space = method.indexOf(' ');
+            found.add(new Site(strings.get(classes[i]), method.substring(0, space), method.substring(space + 1),
+                    bcis[i], KINDS[kinds[i]], strings.get(types[i])));
+        }
+        return found;
+    }
+
+    private int lowerBound(int typeId) {
+        int lo = 0, hi = types.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (types[mid] < typeId)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+
+    public void write(Path file) throws IOException {
+        try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            strings.write(out);
+            out.writeInt(types.length);
+            for (var column : new int[][] { types, classes, methods, bcis })
+                for (int value : column)
+                    out.writeInt(value);
+            out.write(kinds);
+        }
+    }
+
+    public static AllocationSites read(Path file) throws IOException {
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC)
+                throw new IOException(file + " is not an allocation site index");
+            int version = in.readInt();
+            if (version != VERSION)
+                throw new IOException(String.format("%s has version %d; expected %d", file, version, VERSION));
+
+            var strings = StringTable.read(in);
+            int n = in.readInt();
+            var columns = new int[4][n];
+            for (var column : columns)
+                for (int i = 0; i < n; ++i)
+                    column[i] = in.readInt();
+            var kinds = new byte[n];
+            in.readFully(kinds);
+            return new AllocationSites(strings, columns[0], columns[1], columns[2], columns[3], kinds);
+        }
+    }
+
+    public static void main(String... args) throws IOException {
+        if (args.length >= 3 && args[0].equals("build")) {
+            var index = build(Arrays.asList(args).subList(2, args.length));
+            index.write(Path.of(args[1]));
+            System.out.printf("%d allocation sites\n", index.size());
+        } else if (args.length >= 3 && args[0].equals("query")) {
+            var index = read(Path.of(args[1]));
+            var type = args[2].equals("*") ? null : args[2];
+            var packageName = args.length > 3 ? args[3] : null;
+            for (var site : index.find(type, packageName))
+                System.out.printf("%-14s %s  %s.%s%s @%d\n", site.kind(), site.type(),
+                        site.className(), site.methodName(), site.descriptor(), site.bci());
+        } else
+            System.err.println("Usage: AllocationSites build <index file> <jar/class/directory/jrt:/>...\n"
+                    + "       AllocationSites query <index file> <type|*> [package]");
+    }
+}
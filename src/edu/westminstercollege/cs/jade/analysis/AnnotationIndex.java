@@ -0,0 +1,216 @@
+package edu.westminstercollege.cs.jade.analysis;
+
+import edu.westminstercollege.cs.jade.ClassfileReader;
+import edu.westminstercollege.cs.jade.InvalidClassException;
+import edu.westminstercollege.cs.jade.UnsupportedClassFeatureException;
+import edu.westminstercollege.cs.jade.classfile.ConstantPool;
+import edu.westminstercollege.cs.jade.classfile.attribute.RuntimeAnnotationsAttribute;
+import edu.westminstercollege.cs.jade.classfile.attribute.StandardAttributes;
+import edu.westminstercollege.cs.jade.util.ClassEntries;
+import edu.westminstercollege.cs.jade.util.StringTable;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * An index from annotation type to the classes, fields and methods annotated with it, built from the
+ * RuntimeVisibleAnnotations and RuntimeInvisibleAnnotations attributes.
+ *
+ * <p>Scanning a class reads its header and then steps over fields, methods and their attributes by length, so method
+ * bodies and other attributes are never copied or decoded; only annotation attributes are. The index can be saved
+ * and loaded again, so that a program can find its annotated classes at startup without scanning.</p>
+ */
+public final class AnnotationIndex {
+
+    public enum Kind {
+        Class, Field, Method
+    }
+
+    /**
+     * Something annotated. For classes, {@code name} and {@code descriptor} are empty.
+     */
+    public record Target(String className, Kind kind, String name, String descriptor, boolean visible) {}
+
+    private record Found(String annotation, Target target) {}
+
+    private static final int MAGIC = 0x4A41_444E; // "JADN"
+    private static final int VERSION = 1;
+
+    private static final Kind[] KINDS = Kind.values();
+
+    // Annotation types are internal names, e.g. java/lang/Deprecated
+    private final SortedMap<String, List<Target>> targets;
+
+    private AnnotationIndex(SortedMap<String, List<Target>> targets) {
+        this.targets = targets;
+    }
+
+    public static AnnotationIndex build(List<String> locations) throws IOException {
+        List<Found> found = new ArrayList<>();
+        for (var location : locations) {
+            try (var entries = ClassEntries.stream(location)) {
+                found.addAll(entries.parallel().flatMap(AnnotationIndex::scan).toList());
+            }
+        }
+
+        SortedMap<String, List<Target>> targets = found.stream()
+                .collect(Collectors.groupingBy(Found::annotation, TreeMap::new,
+                        Collectors.mapping(Found::target, Collectors.toList())));
+        for (var list : targets.values())
+            list.sort(Comparator.comparing(Target::className)
+                    .thenComparing(Target::kind)
+                    .thenComparing(Target::name)
+                    .thenComparing(Target::descriptor));
+        return new AnnotationIndex(targets);
+    }
+
+    public SortedSet<String> annotations() {
+        return Collections.unmodifiableSortedSet((SortedSet<String>)targets.keySet());
+    }
+
+    /**
+     * Returns what is annotated with the given annotation type (in internal form; dots are accepted too).
+     */
+    public List<Target> targets(String annotation) {
+        return Collections.unmodifiableList(targets.getOrDefault(annotation.replace('.', '/'), List.of()));
+    }
+
+    private static Stream<Found> scan(ClassEntries.Entry entry) {
+        try {
+            var reader = new ClassfileReader();
+            var bytes = entry.buffer();
+            var header = reader.readHeader(bytes);
+            var cp = header.constantPool();
+            var className = header.className();
+            List<Found> found = new ArrayList<>();
+
+            for (var kind : new Kind[] { Kind.Field, Kind.Method }) {
+                int count = bytes.getShort() & 0xffff;
+                for (int i = 0; i < count; ++i) {
+                    bytes.getShort(); // access flags
+                    var name = cp.string(bytes.getShort() & 0xffff);
+                    var descriptor = cp.string(bytes.getShort() & 0xffff);
+                    scanAttributes(reader, bytes, cp, new Target(className, kind, name, descriptor, true), found);
+                }
+            }
+            scanAttributes(reader, bytes, cp, new Target(className, Kind.Class, "", "", true), found);
+
+            return found.stream();
+        } catch (InvalidClassException | UnsupportedClassFeatureException | RuntimeException ex) {
+            System.err.printf("%s: %s\n", entry.name(), ex.getMessage());
+            return Stream.empty();
+        }
+    }
+
+    private static void scanAttributes(ClassfileReader reader, ByteBuffer bytes, ConstantPool cp, Target target,
+                                       List<Found> found) throws InvalidClassException {
+        int count = bytes.getShort() & 0xffff;
+        for (int i = 0; i < count; ++i) {
+            var name = cp.string(bytes.getShort(bytes.position()) & 0xffff);
+            RuntimeAnnotationsAttribute annotations;
+            if (name.equals(StandardAttributes.RuntimeVisibleAnnotations.getName()))
+                annotations = StandardAttributes.RuntimeVisibleAnnotations;
+            else if (name.equals(StandardAttributes.RuntimeInvisibleAnnotations.getName()))
+                annotations = StandardAttributes.RuntimeInvisibleAnnotations;
+            else {
+                int length = bytes.getInt(bytes.position() + 2);
+                bytes.position(bytes.position() + 6 + length);
+                continue;
+            }
+
+            var attribute = reader.readAttribute(bytes);
+            boolean visible = (annotations == StandardAttributes.RuntimeVisibleAnnotations);
+            for (var type : annotations.decode(ByteBuffer.wrap(attribute.info()), cp)) {
+                found.add(new Found(typeName(type), new Target(target.className(), target.kind(), target.name(),
+                        target.descriptor(), visible)));
+            }
+        }
+    }
+
+    private static String typeName(String descriptor) {
+        return descriptor.startsWith("L") && descriptor.endsWith(";")
+                ? descriptor.substring(1, descriptor.length() - 1)
+                : descriptor;
+    }
+
+    public void write(Path file) throws IOException {
+        Set<String> strings = new HashSet<>(targets.keySet());
+        for (var list : targets.values()) {
+            for (var target : list) {
+                strings.add(target.className());
+                strings.add(target.name());
+                strings.add(target.descriptor());
+            }
+        }
+        var table = StringTable.of(strings);
+
+        try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            table.write(out);
+            out.writeInt(targets.size());
+            for (var entry : targets.entrySet()) {
+                out.writeInt(table.indexOf(entry.getKey()));
+                out.writeInt(entry.getValue().size());
+                for (var target : entry.getValue()) {
+                    out.writeInt(table.indexOf(target.className()));
+                    out.writeByte(target.kind().ordinal());
+                    out.writeInt(table.indexOf(target.name()));
+                    out.writeInt(table.indexOf(target.descriptor()));
+                    out.writeBoolean(target.visible());
+                }
+            }
+        }
+    }
+
+    public static AnnotationIndex read(Path file) throws IOException {
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC)
+                throw new IOException(file + " is not an annotation index");
+            int version = in.readInt();
+            if (version != VERSION)
+                throw new IOException(String.format("%s has version %d; expected %d", file, version, VERSION));
+
+            var table = StringTable.read(in);
+            SortedMap<String, List<Target>> targets = new TreeMap<>();
+            int annotations = in.readInt();
+            for (int i = 0; i < annotations; ++i) {
+                var annotation = table.get(in.readInt());
+                int count = in.readInt();
+                List<Target> list = new ArrayList<>(count);
+                for (int j = 0; j < count; ++j)
+                    list.add(new Target(table.get(in.readInt()), KINDS[in.readByte()],
+                            table.get(in.readInt()), table.get(in.readInt()), in.readBoolean()));
+                targets.put(annotation, list);
+            }
+            return new AnnotationIndex(targets);
+        }
+    }
+
+    public static void main(String... args) throws IOException {
+        if (args.length >= 3 && args[0].equals("build")) {
+            var index = build(Arrays.asList(args).subList(2, args.length));
+            index.write(Path.of(args[1]));
+            System.out.printf("%d annotation types\n", index.annotations().size());
+        } else if (args.length >= 2 && args[0].equals("query")) {
+            var index = read(Path.of(args[1]));
+            var annotations = args.length > 2 ? Arrays.asList(args).subList(2, args.length) : index.annotations();
+            for (var annotation : annotations) {
+                System.out.println(annotation.replace('.', '/'));
+                for (var target : index.targets(annotation)) {
+                    System.out.printf("    %s%s%s%s\n", target.className(),
+                            target.kind() == Kind.Class ? "" : "." + target.name() + " " + target.descriptor(),
+                            target.kind() == Kind.Class ? "" : " (" + target.kind().toString().toLowerCase() + ")",
+                            target.visible() ? "" : " [invisible]");
+                }
+            }
+        } else
+            System.err.println("Usage: AnnotationIndex build <index file> <jar/class/directory/jrt:/>...\n"
+                    + "       AnnotationIndex query <index file> [annotation type...]");
+    }
+}
@@ -0,0 +1,31 @@
+package edu.westminstercollege.cs.jade.analysis;
+
+import edu.westminstercollege.cs.jade.classfile.instruction.Operand;
+
+import java.util.Set;
+
+/**
+ * Recognizes the calls javac emits to box a primitive: {@code Integer.valueOf(int)} and its counterparts for the
+ * other wrapper classes.
+ */
+final class Boxing {
+
+    private static final Set<String> BOX_CLASSES = Set.of(
+            "java/lang/Boolean", "java/lang/Byte", "java/lang/Character", "java/lang/Short",
+            "java/lang/Integer", "java/lang/Long", "java/lang/Float", "java/lang/Double");
+
+    private Boxing() {}
+
+    static boolean isBoxing(Operand.Method target) {
+        return target.methodName().equals("valueOf")
+                && BOX_CLASSES.contains(target.className())
+                && isPrimitiveArgument(target.descriptor());
+    }
+
+    // Matches descriptors like (I)Ljava/lang/Integer; but not (Ljava/lang/String;)Ljava/lang/Integer;
+    private static boolean isPrimitiveArgument(String descriptor) {
+        return descriptor.length() > 3
+                && descriptor.charAt(2) == ')'
+                && "ZBCSIJFD".indexOf(descriptor.charAt(1)) >= 0;
+    }
+}
@@ -0,0 +1,333 @@
+package edu.westminstercollege.cs.jade.analysis;
+
+import edu.westminstercollege.cs.jade.ClassfileReader;
+import edu.westminstercollege.cs.jade.InvalidClassException;
+import edu.westminstercollege.cs.jade.UnsupportedClassFeatureException;
+import edu.westminstercollege.cs.jade.util.ClassEntries;
+import edu.westminstercollege.cs.jade.util.JarIndex;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Supertypes of the classes on a classpath, resolved on demand. Only the header of each class asked about (and of its
+ * supertypes) is read, and classes are found through a {@link JarIndex} per jar rather than by scanning. The edges are
+ * kept in primitive arrays indexed by class id, so the hierarchy stays small even when it covers a whole classpath,
+ * and no {@code Classfile}s are kept alive.
+ *
+ * <p>Safe for concurrent queries. Headers are read outside the lock, so two threads may occasionally read the same
+ * class; both record the same edges.</p>
+ */
+public final class ClassHierarchy implements AutoCloseable {
+
+    private static final int UNKNOWN = -1;
+    private static final int NONE = -2;
+
+    private static final byte UNLOADED = 0, LOADED = 1, MISSING = 2;
+
+    private static final int[] NO_INTERFACES = {};
+
+    private final List<Object> roots = new ArrayList<>(); // JarIndex, Path (directory) or the jrt file system
+    private final Map<String, String> jrtModules = new HashMap<>(); // package → module
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private String[] names = new String[1024];
+    private int[] superclasses = new int[1024];
+    private int[][] interfaces = new int[1024][];
+    private byte[] states = new byte[1024];
+    private int size = 0;
+
+    /**
+     * Creates a hierarchy over a classpath: jars, directories and "jrt:/", in lookup order.
+     */
+    public ClassHierarchy(List<String> classpath) throws IOException {
+        try {
+            for (var entry : classpath) {
+                if (entry.equals(ClassEntries.JRT) || entry.equals("jrt:")) {
+                    var jrt = FileSystems.getFileSystem(URI.create(ClassEntries.JRT));
+                    try (var packages = Files.newDirectoryStream(jrt.getPath("/packages"))) {
+                        for (var pkg : packages) {
+                            try (var modules = Files.newDirectoryStream(pkg)) {
+                                for (var module : modules)
+                                    jrtModules.putIfAbsent(pkg.getFileName().toString().replace('.', '/'),
+                                            module.getFileName().toString());
+                            }
+                        }
+                    }
+                    roots.add(jrt);
+                } else if (Files.isDirectory(Path.of(entry)))
+                    roots.add(Path.of(entry));
+                else
+                    roots.add(JarIndex.open(Path.of(entry)));
+            }
+        } catch (IOException | RuntimeException ex) {
+            close();
+            throw ex;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (var root : roots)
+            if (root instanceof JarIndex jar)
+                jar.close();
+    }
+
+    /**
+     * Returns the superclass of a class, or empty for java/lang/Object, module-info and classes that can't be found.
+     */
+    public Optional<String> superclass(String className) throws IOException {
+        int id = load(className);
+        lock.readLock().lock();
+        try {
+            int superclass = superclasses[id];
+            return superclass < 0 ? Optional.empty() : Optional.of(names[superclass]);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<String> interfaces(String className) throws IOException {
+        int id = load(className);
+        lock.readLock().lock();
+        try {
+            List<String> result = new ArrayList<>(interfaces[id].length);
+            for (int i : interfaces[id])
+                result.add(names[i]);
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean exists(String className) throws IOException {
+        int id = load(className);
+        lock.readLock().lock();
+        try {
+            return states[id] == LOADED;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns all supertypes of a class, nearest first: its superclass chain, then the interfaces it implements
+     * directly or indirectly. Supertypes that can't be found are included but not followed.
+     */
+    public List<String> supertypes(String className) throws IOException {
+        Set<Integer> seen = new LinkedHashSet<>();
+        Deque<Integer> queue = new ArrayDeque<>();
+
+        int id = load(className);
+        queue.add(id);
+        for (int superclass = superclassId(id); superclass >= 0 && seen.add(superclass); superclass = superclassId(superclass)) {
+            loadId(superclass);
+            queue.add(superclass);
+        }
+
+        while (!queue.isEmpty()) {
+            for (int i : interfaceIds(queue.poll())) {
+                if (seen.add(i)) {
+                    loadId(i);
+                    queue.add(i);
+                }
+            }
+        }
+
+        List<String> result = new ArrayList<>(seen.size());
+        lock.readLock().lock();
+        try {
+            for (int supertype : seen)
+                result.add(names[supertype]);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    private int superclassId(int id) {
+        lock.readLock().lock();
+        try {
+            return superclasses[id];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int[] interfaceIds(int id) {
+        lock.readLock().lock();
+        try {
+            return interfaces[id];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean isSubtypeOf(String className, String supertype) throws IOException {
+        return className.equals(supertype) || supertypes(className).contains(supertype);
+    }
+
+    private void loadId(int id) throws IOException {
+        String name;
+        lock.readLock().lock();
+        try {
+            if (states[id] != UNLOADED)
+                return;
+            name = names[id];
+        } finally {
+            lock.readLock().unlock();
+        }
+        load(name);
+    }
+
+    private int load(String className) throws IOException {
+        int id = id(className);
+        lock.readLock().lock();
+        try {
+            if (states[id] != UNLOADED)
+                return id;
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        var bytes = find(className);
+        if (bytes == null) {
+            setMissing(id);
+            return id;
+        }
+
+        String superName;
+        String[] interfaceNames;
+        try {
+            var header = new ClassfileReader().readHeader(ByteBuffer.wrap(bytes));
+            superName = header.superClassName();
+            interfaceNames = header.interfaceNames();
+        } catch (InvalidClassException | UnsupportedClassFeatureException | RuntimeException ex) {
+            System.err.printf("%s: %s\n", className, ex.getMessage());
+            setMissing(id);
+            return id;
+        }
+
+        int superId = superName == null ? NONE : id(superName);
+        var interfaceIds = new int[interfaceNames.length];
+        for (int i = 0; i < interfaceNames.length; ++i)
+            interfaceIds[i] = id(interfaceNames[i]);
+
+        lock.writeLock().lock();
+        try {
+            superclasses[id] = superId;
+            interfaces[id] = interfaceIds.length == 0 ? NO_INTERFACES : interfaceIds;
+            states[id] = LOADED;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return id;
+    }
+
+    private void setMissing(int id) {
+        lock.writeLock().lock();
+        try {
+            superclasses[id] = UNKNOWN;
+            interfaces[id] = NO_INTERFACES;
+            states[id] = MISSING;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private int id(String className) {
+        var id = ids.get(className);
+        if (id != null)
+            return id;
+
+        lock.writeLock().lock();
+        try {
+            // Check again now that no one else can be adding
+            id = ids.get(className);
+            if (id != null)
+                return id;
+            if (size == names.length) {
+                int capacity = size * 2;
+                names = Arrays.copyOf(names, capacity);
+                superclasses = Arrays.copyOf(superclasses, capacity);
+                interfaces = Arrays.copyOf(interfaces, capacity);
+                states = Arrays.copyOf(states, capacity);
+            }
+            names[size] = className;
+            superclasses[size] = UNKNOWN;
+            interfaces[size] = NO_INTERFACES;
+            ids.put(className, size);
+            return size++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private byte[] find(String className) throws IOException {
+        var entryName = className + ".class";
+        for (var root : roots) {
+            switch (root) {
+                case JarIndex jar -> {
+                    var bytes = jar.read(entryName);
+                    if (bytes != null)
+                        return bytes;
+                }
+                case Path directory -> {
+                    var file = directory.resolve(entryName.replace("/", directory.getFileSystem().getSeparator()));
+                    if (Files.isRegularFile(file))
+                        return Files.readAllBytes(file);
+                }
+                case FileSystem jrt -> {
+                    int slash = className.lastIndexOf('/');
+                    var module = jrtModules.get(slash < 0 ? "" : className.substring(0, slash));
+                    if (module != null) {
+                        var file = jrt.getPath("/modules", module, entryName);
+                        if (Files.isRegularFile(file))
+                            return Files.readAllBytes(file);
+                    }
+                }
+                default -> throw new IllegalStateException("Unknown classpath root " + root);
+            }
+        }
+        return null;
+    }
+
+    public static void main(String... args) throws IOException {
+        if (args.length < 2) {
+            System.err.printf("Usage: ClassHierarchy <classpath, separated by '%s'; may include jrt:/> <class name>...\n",
+                    File.pathSeparator);
+            return;
+        }
+
+        // On Unix the path separator splits "jrt:/" in two
+        List<String> classpath = new ArrayList<>();
+        var parts = args[0].split(File.pathSeparator);
+        for (int i = 0; i < parts.length; ++i) {
+            if (parts[i].equals("jrt") && i + 1 < parts.length && parts[i + 1].equals("/")) {
+                classpath.add(ClassEntries.JRT);
+                ++i;
+            } else if (!parts[i].isEmpty())
+                classpath.add(parts[i]);
+        }
+
+        try (var hierarchy = new ClassHierarchy(classpath)) {
+            for (int i = 1; i < args.length; ++i) {
+                var name = args[i].replace('.', '/');
+                if (!hierarchy.exists(name)) {
+                    System.err.printf("%s: not found\n", name);
+                    continue;
+                }
+                System.out.println(name);
+                for (var supertype : hierarchy.supertypes(name))
+                    System.out.printf("    %s%s\n", supertype, hierarchy.exists(supertype) ? "" : " (not found)");
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package edu.westminstercollege.cs.jade.analysis;
+
+/**
+ * Sorts tables stored as parallel int columns, for the indexes that keep rows that way instead of as objects.
+ */
+final class ColumnSort {
+
+    private ColumnSort() {}
+
+    /**
+     * Returns the row numbers ordered by the given columns, most significant first; rows that are equal in every
+     * column keep their original order. Values must be non-negative ids, such as string table indices or offsets.
+     *
+     * <p>This is one stable counting sort of the row order per column, least significant first, so rows are never
+     * compared or moved as a whole.</p>
+     */
+    static int[] order(int[]... columns) {
+        int n = columns.length == 0 ? 0 : columns[0].length;
+        var order = new int[n];
+        for (int i = 0; i < n; ++i)
+            order[i] = i;
+        for (int c = columns.length - 1; c >= 0; --c)
+            order = sortBy(columns[c], order);
+        return order;
+    }
+
+    // Stably reorders the rows in order by their value in the given column
+    private static int[] sortBy(int[] column, int[] order) {
+        int max = 0;
+        for (int value : column)
+            max = Math.max(max, value);
+        var starts = new int[max + 2];
+        for (int value : column)
+            ++starts[value + 1];
+        for (int v = 1; v < starts.length; ++v)
+            starts[v] += starts[v - 1];
+
+        var sorted = new int[order.length];
+        for (int row : order)
+            sorted[starts[column[row]]++] = row;
+        return sorted;
+    }
+}
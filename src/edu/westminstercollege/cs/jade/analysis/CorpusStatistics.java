@@ -0,0 +1,312 @@
+package edu.westminstercollege.cs.jade.analysis;
+
+import edu.westminstercollege.cs.jade.ClassfileReader;
+import edu.westminstercollege.cs.jade.InvalidClassException;
+import edu.westminstercollege.cs.jade.UnsupportedClassFeatureException;
+import edu.westminstercollege.cs.jade.classfile.Constant;
+import edu.westminstercollege.cs.jade.classfile.Fingerprints;
+import edu.westminstercollege.cs.jade.classfile.instruction.CodeWalker;
+import edu.westminstercollege.cs.jade.classfile.instruction.Opcode;
+import edu.westminstercollege.cs.jade.util.ClassEntries;
+import edu.westminstercollege.cs.jade.util.JsonWriter;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Opcode, constant pool and method size statistics over every class at a location. Classes are scanned in parallel
+ * with {@link CodeWalker}, each thread counting into its own arrays, and the arrays are summed once at the end.
+ */
+public final class CorpusStatistics {
+
+    // Constant pool tags from JVMS 4.4, indexed by tag
+    private static final String[] TAG_NAMES = {
+            null, "Utf8", null, "Integer", "Float", "Long", "Double", "Class", "String", "Fieldref", "Methodref",
+            "InterfaceMethodref", "NameAndType", null, null, "MethodHandle", "MethodType", "Dynamic", "InvokeDynamic",
+            "Module", "Package"
+    };
+
+    // Code length, max stack and max locals are all u2, so exact histograms are small enough to keep per thread
+    private static final int U2_VALUES = 1 << 16;
+
+    private long classes = 0;
+    private long methods = 0;
+    private long instructions = 0;
+    private long failures = 0;
+    private final long[] opcodes = new long[256];
+    private final long[] tags = new long[TAG_NAMES.length];
+    private final long[] codeLengths = new long[U2_VALUES];
+    private final long[] maxStacks = new long[U2_VALUES];
+    private final long[] maxLocals = new long[U2_VALUES];
+
+    private CorpusStatistics() {}
+
+    public static CorpusStatistics collect(String location) throws IOException {
+        // Stream.collect would make a set of arrays for every fork/join leaf task rather than for every thread. Keyed
+        // by thread rather than in a ThreadLocal, so nothing is left on the pool's threads afterwards
+        Map<Thread, CorpusStatistics> perThread = new ConcurrentHashMap<>();
+        try (var classes = ClassEntries.stream(location)) {
+            classes.parallel().forEach(entry ->
+                    perThread.computeIfAbsent(Thread.currentThread(), t -> new CorpusStatistics()).add(entry));
+        }
+
+        var total = new CorpusStatistics();
+        for (var stats : perThread.values())
+            total.merge(stats);
+        return total;
+    }
+
+    private void add(ClassEntries.Entry entry) {
+        try {
+            var cf = new ClassfileReader().read(entry.buffer());
+            var cp = cf.constantPool();
+            for (var constant : cp.constants())
+                if (constant != null)
+                    ++tags[tag(constant)];
+
+            for (var method : cf.methods()) {
+                var code = Fingerprints.code(method, cp);
+                if (code == null)
+                    continue;
+
+                var walker = new CodeWalker(code.code());
+                while (walker.next()) {
+                    ++opcodes[walker.opcode().value()];
+                    ++instructions;
+                }
+                ++methods;
+                ++codeLengths[code.code().length];
+                ++maxStacks[code.maxStack()];
+                ++maxLocals[code.maxLocals()];
+            }
+            ++classes;
+        } catch (InvalidClassException | UnsupportedClassFeatureException | RuntimeException ex) {
+            ++failures;
+        }
+    }
+
+    private void merge(CorpusStatistics other) {
+        classes += other.classes;
+        methods += other.methods;
+        instructions += other.instructions;
+        failures += other.failures;
+        addAll(opcodes, other.opcodes);
+        addAll(tags, other.tags);
+        addAll(codeLengths, other.codeLengths);
+        addAll(maxStacks, other.maxStacks);
+        addAll(maxLocals, other.maxLocals);
+    }
+
+    private static void addAll(long[] into, long[] from) {
+        for (int i = 0; i < into.length; ++i)
+            into[i] += from[i];
+    }
+
+    private static int tag(Constant constant) {
+        return switch (constant) {
+            case Constant.Utf8 c -> 1;
+            case Constant.Integer c -> 3;
+            case Constant.Float c -> 4;
+            case Constant.Long c -> 5;
+            case Constant.Double c -> 6;
+            case Constant.Class c -> 7;
+            case Constant.String c -> 8;
+            case Constant.FieldRef c -> 9;
+            case Constant.MethodRef c -> 10;
+            case Constant.InterfaceMethodRef c -> 11;
+            case Constant.NameAndType c -> 12;
+            case Constant.MethodHandle c -> 15;
+            case Constant.MethodType c -> 16;
+            case Constant.Dynamic c -> 17;
+            case Constant.InvokeDynamic c -> 18;
+            case Constant.Module c -> 19;
+            case Constant.Package c -> 20;
+        };
+    }
+
+    public long classes() {
+        return classes;
+    }
+
+    public long methods() {
+        return methods;
+    }
+
+    public long instructions() {
+        return instructions;
+    }
+
+    public long failures() {
+        return failures;
+    }
+
+    public long count(Opcode opcode) {
+        return opcodes[opcode.value()];
+    }
+
+    /**
+     * Returns the smallest value at or below which {@code percent} percent of the histogram's entries lie.
+     */
+    private static int percentile(long[] histogram, double percent) {
+        long total = 0;
+        for (long count : histogram)
+            total += count;
+        if (total == 0)
+            return 0;
+
+        long wanted = (long)Math.ceil(total * percent / 100.0);
+        long seen = 0;
+        for (int value = 0; value < histogram.length; ++value) {
+            seen += histogram[value];
+            if (seen >= Math.max(1, wanted))
+                return value;
+        }
+        return histogram.length - 1;
+    }
+
+    /**
+     * Buckets a u2 histogram into powers of two: bucket 0 holds 0, bucket n holds [2^(n-1), 2^n).
+     */
+    private static long[] log2Buckets(long[] histogram) {
+        var buckets = new long[18];
+        for (int value = 0; value < histogram.length; ++value)
+            buckets[32 - Integer.numberOfLeadingZeros(value)] += histogram[value];
+        return buckets;
+    }
+
+    private static final double[] PERCENTILES = { 50, 90, 99, 99.9, 100 };
+
+    private static final Opcode[] INVOKES = {
+            Opcode.INVOKEVIRTUAL, Opcode.INVOKEINTERFACE, Opcode.INVOKESTATIC, Opcode.INVOKESPECIAL, Opcode.INVOKEDYNAMIC
+    };
+
+    private List<Opcode> opcodesByFrequency() {
+        List<Opcode> sorted = new ArrayList<>();
+        for (var opcode : Opcode.values())
+            if (count(opcode) > 0)
+                sorted.add(opcode);
+        sorted.sort(Comparator.comparingLong(this::count).reversed().thenComparing(Opcode::mnemonic));
+        return sorted;
+    }
+
+    private long invokes() {
+        long total = 0;
+        for (var invoke : INVOKES)
+            total += count(invoke);
+        return total;
+    }
+
+    private static double percent(long count, long total) {
+        return total == 0 ? 0 : 100.0 * count / total;
+    }
+
+    public void printText(PrintWriter out) {
+        out.printf("%d classes, %d methods with code, %d instructions, %d undecodable classes\n",
+                classes, methods, instructions, failures);
+
+        out.println("\nOpcodes");
+        for (var opcode : opcodesByFrequency())
+            out.printf("    %-16s %12d %6.2f%%\n", opcode.mnemonic(), count(opcode), percent(count(opcode), instructions));
+
+        long constants = 0;
+        for (long count : tags)
+            constants += count;
+        out.println("\nConstant pool tags");
+        for (int tag = 0; tag < tags.length; ++tag)
+            if (TAG_NAMES[tag] != null)
+                out.printf("    %-18s %12d %6.2f%%\n", TAG_NAMES[tag], tags[tag], percent(tags[tag], constants));
+
+        long invokes = invokes();
+        out.println("\nInvocations");
+        for (var invoke : INVOKES)
+            out.printf("    %-16s %12d %6.2f%%\n", invoke.mnemonic(), count(invoke), percent(count(invoke), invokes));
+
+        out.println("\nMethod code length");
+        var buckets = log2Buckets(codeLengths);
+        for (int i = 0; i < buckets.length; ++i)
+            if (buckets[i] > 0)
+                out.printf("    %6d-%-6d %12d %6.2f%%\n",
+                        i == 0 ? 0 : 1 << (i - 1), i == 0 ? 0 : (1 << i) - 1, buckets[i], percent(buckets[i], methods));
+
+        out.println("\nPercentiles      code length   max stack  max locals");
+        for (var p : PERCENTILES)
+            out.printf("    p%-8s %15d %11d %11d\n", formatPercent(p),
+                    percentile(codeLengths, p), percentile(maxStacks, p), percentile(maxLocals, p));
+        out.flush();
+    }
+
+    public void printJson(PrintWriter out) {
+        var json = new JsonWriter(out);
+        json.beginObject()
+                .property("classes", classes)
+                .property("methods", methods)
+                .property("instructions", instructions)
+                .property("failures", failures);
+
+        json.name("opcodes").beginObject();
+        for (var opcode : opcodesByFrequency())
+            json.property(opcode.mnemonic(), count(opcode));
+        json.endObject();
+
+        json.name("constantPoolTags").beginObject();
+        for (int tag = 0; tag < tags.length; ++tag)
+            if (TAG_NAMES[tag] != null)
+                json.property(TAG_NAMES[tag], tags[tag]);
+        json.endObject();
+
+        json.name("invocations").beginObject();
+        for (var invoke : INVOKES)
+            json.property(invoke.mnemonic(), count(invoke));
+        json.endObject();
+
+        json.name("codeLengthLog2").beginArray();
+        for (long count : log2Buckets(codeLengths))
+            json.value(count);
+        json.endArray();
+
+        json.name("percentiles").beginObject();
+        for (var p : PERCENTILES) {
+            json.name("p" + formatPercent(p)).beginObject()
+                    .property("codeLength", percentile(codeLengths, p))
+                    .property("maxStack", percentile(maxStacks, p))
+                    .property("maxLocals", percentile(maxLocals, p))
+                    .endObject();
+        }
+        json.endObject();
+
+        json.endObject();
+        out.println();
+        out.flush();
+    }
+
+    private static String formatPercent(double p) {
+        return p == Math.rint(p) ? Integer.toString((int)p) : Double.toString(p);
+    }
+
+    public static void main(String... args) throws IOException {
+        boolean json = false;
+        List<String> locations = new ArrayList<>();
+        for (var arg : args) {
+            if (arg.equals("--json"))
+                json = true;
+            else
+                locations.add(arg);
+        }
+
+        if (locations.isEmpty()) {
+            System.err.println("Usage: CorpusStatistics [--json] <jar/class/directory/jrt:/>...");
+            return;
+        }
+
+        var out = new PrintWriter(System.out);
+        for (var location : locations) {
+            var stats = collect(location);
+            if (json)
+                stats.printJson(out);
+            else
+                stats.printText(out);
+        }
+    }
+}
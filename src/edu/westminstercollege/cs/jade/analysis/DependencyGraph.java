@@ -0,0 +1,348 @@
+package edu.westminstercollege.cs.jade.analysis;
+
+import edu.westminstercollege.cs.jade.ClassfileReader;
+import edu.westminstercollege.cs.jade.InvalidClassException;
+import edu.westminstercollege.cs.jade.UnsupportedClassFeatureException;
+import edu.westminstercollege.cs.jade.classfile.Constant;
+import edu.westminstercollege.cs.jade.util.ClassEntries;
+import edu.westminstercollege.cs.jade.util.JsonWriter;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Package- or module-level dependencies between classes, in the style of jdeps. Only each class's header and constant
+ * pool are read: dependencies are the classes named by Class constants and by descriptors in the pool.
+ *
+ * <p>At module level, classes from jrt:/ belong to their module and classes from a jar or directory belong to that
+ * jar or directory. Referenced classes that aren't in any of the locations given are grouped into a "not found"
+ * module, as jdeps does.</p>
+ */
+public final class DependencyGraph {
+
+    public enum Level {
+        Package, Module
+    }
+
+    public static final String NOT_FOUND = "not found";
+
+    private record ClassDependencies(String location, String className, Set<String> dependencies) {}
+
+    /**
+     * Nodes, weighted edges (the number of class-to-class dependencies each stands for), the set of nodes defined by
+     * the locations scanned, and the strongly connected components with more than one node.
+     */
+    public record Graph(SortedSet<String> nodes, SortedSet<String> internalNodes,
+                       SortedMap<String, SortedMap<String, Integer>> edges, List<List<String>> cycles) {
+
+        public boolean isInCycle(String from, String to) {
+            for (var cycle : cycles)
+                if (cycle.contains(from) && cycle.contains(to))
+                    return true;
+            return false;
+        }
+    }
+
+    private DependencyGraph() {}
+
+    public static Graph build(List<String> locations, Level level, boolean internalOnly) throws IOException {
+        List<ClassDependencies> classes = new ArrayList<>();
+        for (var location : locations) {
+            try (var entries = ClassEntries.stream(location)) {
+                classes.addAll(entries.parallel().flatMap(DependencyGraph::dependencies).toList());
+            }
+        }
+
+        // Where each class, and failing that each package, is defined; earlier locations win, as on a classpath
+        Map<String, String> classNodes = new HashMap<>();
+        Map<String, String> packageNodes = new HashMap<>();
+        for (var c : classes) {
+            var node = level == Level.Package ? packageName(c.className()) : c.location();
+            classNodes.putIfAbsent(c.className(), node);
+            packageNodes.putIfAbsent(packageName(c.className()), node);
+        }
+
+        SortedSet<String> internal = new TreeSet<>(classNodes.values());
+        SortedSet<String> nodes = new TreeSet<>(internal);
+        SortedMap<String, SortedMap<String, Integer>> edges = new TreeMap<>();
+        for (var c : classes) {
+            var from = classNodes.get(c.className());
+            for (var dependency : c.dependencies()) {
+                var to = classNodes.get(dependency);
+                if (to == null)
+                    to = level == Level.Package
+                            ? packageName(dependency)
+                            : packageNodes.getOrDefault(packageName(dependency), NOT_FOUND);
+                if (to.equals(from) || (internalOnly && !internal.contains(to)))
+                    continue;
+                nodes.add(to);
+                edges.computeIfAbsent(from, f -> new TreeMap<>()).merge(to, 1, Integer::sum);
+            }
+        }
+
+        return new Graph(nodes, internal, edges, cycles(nodes, edges));
+    }
+
+    private static Stream<ClassDependencies> dependencies(ClassEntries.Entry entry) {
+        try {
+            var header = new ClassfileReader().readHeader(entry.buffer());
+            var cp = header.constantPool();
+            Set<String> dependencies = new HashSet<>();
+
+            // String literals are Utf8 constants too ("LOG;" would parse as a descriptor naming class OG), so skip
+            // the ones nothing but a String constant refers to
+            var constants = cp.constants();
+            var literals = new BitSet(constants.length);
+            for (var constant : constants)
+                if (constant instanceof Constant.String(int stringIndex))
+                    literals.set(stringIndex);
+            for (var constant : constants) {
+                switch (constant) {
+                    case Constant.Class(int nameIndex) -> literals.clear(nameIndex);
+                    case Constant.NameAndType(int nameIndex, int descriptorIndex) -> literals.clear(descriptorIndex);
+                    case Constant.MethodType(int descriptorIndex) -> literals.clear(descriptorIndex);
+                    case null, default -> {}
+                }
+            }
+
+            for (int i = 0; i < constants.length; ++i) {
+                switch (constants[i]) {
+                    case Constant.Class(int nameIndex) -> {
+                        var name = cp.string(nameIndex);
+                        if (name.startsWith("["))
+                            addDescriptorClasses(name, dependencies);
+                        else
+                            dependencies.add(name);
+                    }
+                    case Constant.Utf8(String value) -> {
+                        // Descriptors of the class's own members and of the members it refers to all live in the
+                        // pool, but only the latter are reachable from other constants; so try every string that
+                        // could be one, relying on the strict parse to reject everything else.
+                        if (!literals.get(i) && !value.isEmpty() && "(L[".indexOf(value.charAt(0)) >= 0)
+                            addDescriptorClasses(value, dependencies);
+                    }
+                    case null, default -> {}
+                }
+            }
+
+            var className = header.className();
+            dependencies.remove(className);
+            return Stream.of(new ClassDependencies(entry.location(), className, dependencies));
+        } catch (InvalidClassException | UnsupportedClassFeatureException | RuntimeException ex) {
+            System.err.printf("%s: %s\n", entry.name(), ex.getMessage());
+            return Stream.empty();
+        }
+    }
+
+    /**
+     * Adds the classes named in a field or method descriptor, if {@code s} is one.
+     */
+    private static void addDescriptorClasses(String s, Set<String> classes) {
+        List<String> found = new ArrayList<>();
+        int p = 0;
+        if (s.charAt(0) == '(') {
+            p = 1;
+            while (p < s.length() && s.charAt(p) != ')') {
+                p = parseFieldType(s, p, found);
+                if (p < 0)
+                    return;
+            }
+            if (p >= s.length())
+                return;
+            ++p;
+            if (p < s.length() && s.charAt(p) == 'V')
+                ++p;
+            else
+                p = parseFieldType(s, p, found);
+        } else
+            p = parseFieldType(s, 0, found);
+
+        if (p == s.length())
+            classes.addAll(found);
+    }
+
+    // Returns the position after the field type starting at p, or -1 if there isn't one
+    private static int parseFieldType(String s, int p, List<String> found) {
+        while (p < s.length() && s.charAt(p) == '[')
+            ++p;
+        if (p >= s.length())
+            return -1;
+        char c = s.charAt(p);
+        if ("BCDFIJSZ".indexOf(c) >= 0)
+            return p + 1;
+        if (c != 'L')
+            return -1;
+
+        int end = s.indexOf(';', p);
+        if (end <= p + 1)
+            return -1;
+        var name = s.substring(p + 1, end);
+        for (int i = 0; i < name.length(); ++i)
+            if (".[<>(): ".indexOf(name.charAt(i)) >= 0)
+                return -1;
+        found.add(name);
+        return end + 1;
+    }
+
+    private static String packageName(String className) {
+        int slash = className.lastIndexOf('/');
+        return slash < 0 ? "(default)" : className.substring(0, slash).replace('/', '.');
+    }
+
+    /**
+     * Tarjan's algorithm, iteratively so that long dependency chains can't overflow the stack.
+     */
+    private static List<List<String>> cycles(SortedSet<String> nodeSet, Map<String, SortedMap<String, Integer>> edges) {
+        var nodes = nodeSet.toArray(new String[0]);
+        Map<String, Integer> ids = new HashMap<>();
+        for (int i = 0; i < nodes.length; ++i)
+            ids.put(nodes[i], i);
+
+        var successors = new int[nodes.length][];
+        for (int i = 0; i < nodes.length; ++i) {
+            var out = edges.getOrDefault(nodes[i], Collections.emptySortedMap());
+            successors[i] = out.keySet().stream().mapToInt(ids::get).toArray();
+        }
+
+        int n = nodes.length;
+        var index = new int[n];
+        var lowLink = new int[n];
+        var onStack = new boolean[n];
+        Arrays.fill(index, -1);
+        var stack = new ArrayDeque<Integer>();
+        var callStack = new ArrayDeque<int[]>(); // { node, next successor }
+        int nextIndex = 0;
+        List<List<String>> cycles = new ArrayList<>();
+
+        for (int root = 0; root < n; ++root) {
+            if (index[root] >= 0)
+                continue;
+            callStack.push(new int[] { root, 0 });
+            index[root] = lowLink[root] = nextIndex++;
+            stack.push(root);
+            onStack[root] = true;
+
+            while (!callStack.isEmpty()) {
+                var frame = callStack.peek();
+                int v = frame[0];
+                if (frame[1] < successors[v].length) {
+                    int w = successors[v][frame[1]++];
+                    if (index[w] < 0) {
+                        index[w] = lowLink[w] = nextIndex++;
+                        stack.push(w);
+                        onStack[w] = true;
+                        callStack.push(new int[] { w, 0 });
+                    } else if (onStack[w])
+                        lowLink[v] = Math.min(lowLink[v], index[w]);
+                    continue;
+                }
+
+                callStack.pop();
+                if (!callStack.isEmpty()) {
+                    int parent = callStack.peek()[0];
+                    lowLink[parent] = Math.min(lowLink[parent], lowLink[v]);
+                }
+
+                if (lowLink[v] == index[v]) {
+                    List<String> component = new ArrayList<>();
+                    int w;
+                    do {
+                        w = stack.pop();
+                        onStack[w] = false;
+                        component.add(nodes[w]);
+                    } while (w != v);
+                    if (component.size() > 1) {
+                        Collections.sort(component);
+                        cycles.add(component);
+                    }
+                }
+            }
+        }
+
+        cycles.sort(Comparator.comparing((List<String> c) -> c.get(0)));
+        return cycles;
+    }
+
+    public static void printDot(PrintWriter out, Graph graph) {
+        out.println("digraph dependencies {");
+        out.println("    node [shape=box];");
+        for (var node : graph.nodes()) {
+            if (!graph.internalNodes().contains(node))
+                out.printf("    %s [style=dashed];\n", quote(node));
+        }
+        for (var from : graph.edges().entrySet()) {
+            for (var to : from.getValue().entrySet()) {
+                out.printf("    %s -> %s [label=%d%s];\n", quote(from.getKey()), quote(to.getKey()), to.getValue(),
+                        graph.isInCycle(from.getKey(), to.getKey()) ? ", color=red" : "");
+            }
+        }
+        out.println("}");
+        out.flush();
+    }
+
+    private static String quote(String s) {
+        return "\"" + s.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    public static void printJson(PrintWriter out, Graph graph) {
+        var json = new JsonWriter(out);
+        json.beginObject().name("nodes").beginArray();
+        for (var node : graph.nodes()) {
+            json.beginObject()
+                    .property("name", node)
+                    .property("internal", graph.internalNodes().contains(node))
+                    .endObject();
+        }
+        json.endArray().name("edges").beginArray();
+        for (var from : graph.edges().entrySet()) {
+            for (var to : from.getValue().entrySet()) {
+                json.beginObject()
+                        .property("from", from.getKey())
+                        .property("to", to.getKey())
+                        .property("weight", to.getValue())
+                        .endObject();
+            }
+        }
+        json.endArray().name("cycles").beginArray();
+        for (var cycle : graph.cycles()) {
+            json.beginArray();
+            for (var node : cycle)
+                json.value(node);
+            json.endArray();
+        }
+        json.endArray().endObject();
+        out.println();
+        out.flush();
+    }
+
+    public static void main(String... args) throws IOException {
+        var level = Level.Package;
+        boolean json = false, internalOnly = false;
+        List<String> locations = new ArrayList<>();
+        for (var arg : args) {
+            switch (arg) {
+                case "--module" -> level = Level.Module;
+                case "--json" -> json = true;
+                case "--internal" -> internalOnly = true;
+                default -> locations.add(arg);
+            }
+        }
+
+        if (locations.isEmpty()) {
+            System.err.println("Usage: DependencyGraph [--module] [--internal] [--json] <jar/class/directory/jrt:/>...");
+            return;
+        }
+
+        var graph = build(locations, level, internalOnly);
+        var out = new PrintWriter(System.out);
+        if (json)
+            printJson(out, graph);
+        else
+            printDot(out, graph);
+
+        for (var cycle : graph.cycles())
+            System.err.printf("cycle: %s\n", String.join(", ", cycle));
+    }
+}
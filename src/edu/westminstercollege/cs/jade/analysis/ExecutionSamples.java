@@ -0,0 +1,219 @@
+package edu.westminstercollege.cs.jade.analysis;
+
+import edu.westminstercollege.cs.jade.ClassfileReader;
+import edu.westminstercollege.cs.jade.Disassembler;
+import edu.westminstercollege.cs.jade.InvalidClassException;
+import edu.westminstercollege.cs.jade.UnsupportedClassFeatureException;
+import edu.westminstercollege.cs.jade.util.ClassEntries;
+import edu.westminstercollege.cs.jade.util.LongIntHashMap;
+import jdk.jfr.consumer.RecordedMethod;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * {@code jdk.ExecutionSample} counts from a JFR recording, aggregated by method and bytecode index for annotating
+ * disassembly. Events are read one at a time, so only the counts are kept in memory.
+ *
+ * <p>Self counts come from the top frame of each sample. Total counts include every frame, so on a call instruction
+ * they show the time spent in everything it called.</p>
+ */
+public class ExecutionSamples implements Disassembler.Annotator {
+
+    public record MethodSamples(String className, String methodName, String descriptor, int self, int total) {}
+
+    // Method keys are "class name descriptor", with the class name in internal form; ids index this list
+    private final List<String> methodKeys = new ArrayList<>();
+    private final Map<String, Integer> methodIds = new HashMap<>();
+
+    // Keyed by method id << 32 | bci
+    private final LongIntHashMap selfByBci = new LongIntHashMap(1 << 12);
+    private final LongIntHashMap totalByBci = new LongIntHashMap(1 << 12);
+    // Keyed by method id
+    private final LongIntHashMap selfByMethod = new LongIntHashMap();
+    private final LongIntHashMap totalByMethod = new LongIntHashMap();
+
+    private long samples = 0;
+
+    public static ExecutionSamples read(Path recording) throws IOException {
+        var result = new ExecutionSamples();
+
+        // The parser shares RecordedMethod objects between events that refer to the same method, so this saves
+        // building a key string for every frame. It's cleared now and then since instances aren't shared across chunks.
+        Map<RecordedMethod, Integer> ids = new IdentityHashMap<>();
+        long[] seen = new long[64];
+
+        try (var file = new RecordingFile(recording)) {
+            while (file.hasMoreEvents()) {
+                var event = file.readEvent();
+                if (!event.getEventType().getName().equals("jdk.ExecutionSample"))
+                    continue;
+                var stackTrace = event.getStackTrace();
+                if (stackTrace == null)
+                    continue;
+
+                if (ids.size() > 100_000)
+                    ids.clear();
+
+                int seenCount = 0;
+                boolean top = true;
+                for (var frame : stackTrace.getFrames()) {
+                    if (!frame.isJavaFrame())
+                        continue;
+                    var method = frame.getMethod();
+                    int id = ids.computeIfAbsent(method, result::methodId);
+                    long key = ((long)id << 32) | (frame.getBytecodeIndex() & 0xffffffffL);
+
+                    if (top) {
+                        result.selfByBci.add(key, 1);
+                        result.selfByMethod.add(id, 1);
+                        top = false;
+                    }
+
+                    // Recursive calls shouldn't count a sample more than once
+                    if (!contains(seen, seenCount, key)) {
+                        if (seenCount == seen.length)
+                            seen = Arrays.copyOf(seen, seen.length * 2);
+                        seen[seenCount++] = key;
+                        result.totalByBci.add(key, 1);
+                        if (!containsMethod(seen, seenCount - 1, id))
+                            result.totalByMethod.add(id, 1);
+                    }
+                }
+
+                if (!top)
+                    ++result.samples;
+            }
+        }
+
+        return result;
+    }
+
+    private static boolean contains(long[] keys, int count, long key) {
+        for (int i = 0; i < count; ++i)
+            if (keys[i] == key)
+                return true;
+        return false;
+    }
+
+    private static boolean containsMethod(long[] keys, int count, int methodId) {
+        for (int i = 0; i < count; ++i)
+            if ((int)(keys[i] >>> 32) == methodId)
+                return true;
+        return false;
+    }
+
+    private int methodId(RecordedMethod method) {
+        var key = key(method.getType().getName().replace('.', '/'), method.getName(), method.getDescriptor());
+        return methodIds.computeIfAbsent(key, k -> {
+            methodKeys.add(k);
+            return methodKeys.size() - 1;
+        });
+    }
+
+    private static String key(String className, String methodName, String descriptor) {
+        return className + " " + methodName + " " + descriptor;
+    }
+
+    /**
+     * The number of samples with at least one Java frame.
+     */
+    public long samples() {
+        return samples;
+    }
+
+    public int self(String className, String methodName, String descriptor, int bci) {
+        var id = methodIds.get(key(className, methodName, descriptor));
+        return id == null ? 0 : selfByBci.get(((long)id << 32) | bci, 0);
+    }
+
+    public int total(String className, String methodName, String descriptor, int bci) {
+        var id = methodIds.get(key(className, methodName, descriptor));
+        return id == null ? 0 : totalByBci.get(((long)id << 32) | bci, 0);
+    }
+
+    /**
+     * Returns every sampled method, hottest (by self samples, then total) first.
+     */
+    public List<MethodSamples> methods() {
+        List<MethodSamples> methods = new ArrayList<>(methodKeys.size());
+        for (int id = 0; id < methodKeys.size(); ++id) {
+            var parts = methodKeys.get(id).split(" ");
+            methods.add(new MethodSamples(parts[0], parts[1], parts[2],
+                    selfByMethod.get(id, 0), totalByMethod.get(id, 0)));
+        }
+        methods.sort(Comparator.comparingInt(MethodSamples::self)
+                .thenComparingInt(MethodSamples::total)
+                .reversed()
+                .thenComparing(m -> key(m.className(), m.methodName(), m.descriptor())));
+        return methods;
+    }
+
+    public void printSummary(PrintWriter out, int limit) {
+        out.printf("%d samples\n", samples);
+        out.printf("%8s %7s %8s %7s  %s\n", "self", "", "total", "", "method");
+        for (var m : methods().subList(0, Math.min(limit, methodKeys.size())))
+            out.printf("%8d %6.2f%% %8d %6.2f%%  %s.%s%s\n",
+                    m.self(), percent(m.self()), m.total(), percent(m.total()),
+                    m.className(), m.methodName(), m.descriptor());
+        out.flush();
+    }
+
+    @Override
+    public String methodNote(String className, String methodName, String descriptor) {
+        var id = methodIds.get(key(className, methodName, descriptor));
+        if (id == null)
+            return null;
+        int self = selfByMethod.get(id, 0), total = totalByMethod.get(id, 0);
+        return String.format("samples: self %d (%.2f%%), total %d (%.2f%%)", self, percent(self), total, percent(total));
+    }
+
+    @Override
+    public String instructionNote(String className, String methodName, String descriptor, int bci) {
+        int self = self(className, methodName, descriptor, bci);
+        int total = total(className, methodName, descriptor, bci);
+        if (total == 0)
+            return null;
+        if (total == self)
+            return String.format("%d (%.2f%%)", self, percent(self));
+        return String.format("self %d (%.2f%%), total %d (%.2f%%)", self, percent(self), total, percent(total));
+    }
+
+    private double percent(int count) {
+        return samples == 0 ? 0 : 100.0 * count / samples;
+    }
+
+    public static void main(String... args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: ExecutionSamples <recording.jfr> <jar/class/directory/jrt:/> [class name...]");
+            return;
+        }
+
+        var samples = read(Path.of(args[0]));
+        var out = new PrintWriter(System.out);
+        samples.printSummary(out, 20);
+
+        // Without a list of classes, show the ones owning the hottest methods
+        Set<String> wanted = new HashSet<>();
+        if (args.length > 2)
+            wanted.addAll(Arrays.asList(args).subList(2, args.length));
+        else
+            samples.methods().stream().limit(5).forEach(m -> wanted.add(m.className()));
+
+        try (var classes = ClassEntries.stream(args[1])) {
+            for (var entry : (Iterable<ClassEntries.Entry>)classes.filter(e -> wanted.contains(e.name()))::iterator) {
+                try {
+                    out.println();
+                    var classfile = new ClassfileReader().read(entry.buffer());
+                    new Disassembler(classfile, samples).disassemble(out);
+                } catch (InvalidClassException | UnsupportedClassFeatureException ex) {
+                    System.err.printf("%s: %s\n", entry.name(), ex.getMessage());
+                }
+            }
+        }
+        out.flush();
+    }
+}
@@ -0,0 +1,261 @@
+package edu.westminstercollege.cs.jade.analysis;
+
+import edu.westminstercollege.cs.jade.ClassfileReader;
+import edu.westminstercollege.cs.jade.Disassembler;
+import edu.westminstercollege.cs.jade.InvalidClassException;
+import edu.westminstercollege.cs.jade.UnsupportedClassFeatureException;
+import edu.westminstercollege.cs.jade.util.ClassEntries;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Inlining decisions and compilation tiers read from a HotSpot {@code -XX:+LogCompilation} log, for annotating
+ * disassembly. The log is read with a streaming XML parser, so only the decisions themselves are kept in memory.
+ *
+ * <p>Decisions are recorded against the method whose bytecode contains the call, which for calls inside inlined
+ * methods is the inlined callee rather than the method being compiled.</p>
+ */
+public class InliningLog implements Disassembler.Annotator {
+
+    public static final class MethodInfo {
+        private int bytes = -1;
+        private int maxTier = 0;
+        private int compilations = 0;
+        private final SortedMap<Integer, Set<String>> decisions = new TreeMap<>();
+
+        public int bytes() {
+            return bytes;
+        }
+
+        public int maxTier() {
+            return maxTier;
+        }
+
+        public int compilations() {
+            return compilations;
+        }
+
+        public SortedMap<Integer, Set<String>> decisions() {
+            return Collections.unmodifiableSortedMap(decisions);
+        }
+    }
+
+    // Keyed by "class name descriptor", with the class name in internal form
+    private final Map<String, MethodInfo> methods = new HashMap<>();
+
+    public static InliningLog read(Path logFile) throws IOException {
+        try (var in = Files.newInputStream(logFile)) {
+            return read(in);
+        }
+    }
+
+    public static InliningLog read(InputStream in) throws IOException {
+        var log = new InliningLog();
+        var factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+
+        try {
+            var xml = factory.createXMLStreamReader(in);
+            try {
+                log.parse(xml);
+            } finally {
+                xml.close();
+            }
+        } catch (XMLStreamException ex) {
+            // Logs from VMs that were killed are truncated; keep whatever was read up to that point
+            if (log.methods.isEmpty())
+                throw new IOException("Could not read compilation log: " + ex.getMessage(), ex);
+        }
+
+        return log;
+    }
+
+    public Optional<MethodInfo> method(String className, String methodName, String descriptor) {
+        return Optional.ofNullable(methods.get(key(className, methodName, descriptor)));
+    }
+
+    public Set<String> classNames() {
+        Set<String> names = new TreeSet<>();
+        for (var key : methods.keySet())
+            names.add(key.substring(0, key.indexOf(' ')));
+        return names;
+    }
+
+    @Override
+    public String methodNote(String className, String methodName, String descriptor) {
+        var info = methods.get(key(className, methodName, descriptor));
+        if (info == null)
+            return null;
+        if (info.compilations == 0)
+            return String.format("bytes=%d, inlined only", info.bytes);
+        return String.format("bytes=%d, compiled %d time(s), highest tier %d", info.bytes, info.compilations, info.maxTier);
+    }
+
+    @Override
+    public String instructionNote(String className, String methodName, String descriptor, int bci) {
+        var info = methods.get(key(className, methodName, descriptor));
+        if (info == null)
+            return null;
+        var decisions = info.decisions.get(bci);
+        return decisions == null ? null : String.join("; ", decisions);
+    }
+
+    private void parse(XMLStreamReader xml) throws XMLStreamException {
+        // Identifiers of types and methods are local to a compile task
+        Map<String, String> types = new HashMap<>();
+        Map<String, String> methodKeys = new HashMap<>();
+        Map<String, Integer> methodBytes = new HashMap<>();
+        Deque<String> parseStack = new ArrayDeque<>();
+        int bci = -1;
+        int tier = 0;
+        String callee = null;
+
+        while (xml.hasNext()) {
+            if (xml.next() != XMLStreamConstants.START_ELEMENT)
+                continue;
+
+            switch (xml.getLocalName()) {
+                case "task" -> {
+                    types.clear();
+                    methodKeys.clear();
+                    methodBytes.clear();
+                    parseStack.clear();
+                    bci = -1;
+                    callee = null;
+                    var level = xml.getAttributeValue(null, "level");
+                    tier = (level == null) ? 4 : Integer.parseInt(level);
+
+                    var method = xml.getAttributeValue(null, "method");
+                    if (method != null) {
+                        var info = info(taskMethodKey(method));
+                        ++info.compilations;
+                        info.maxTier = Math.max(info.maxTier, tier);
+                        var bytes = xml.getAttributeValue(null, "bytes");
+                        if (bytes != null)
+                            info.bytes = Integer.parseInt(bytes);
+                    }
+                }
+
+                case "type", "klass" -> types.put(xml.getAttributeValue(null, "id"), xml.getAttributeValue(null, "name"));
+
+                case "method" -> {
+                    var id = xml.getAttributeValue(null, "id");
+                    var holder = types.get(xml.getAttributeValue(null, "holder"));
+                    if (holder == null)
+                        continue;
+                    var descriptor = new StringBuilder("(");
+                    var arguments = xml.getAttributeValue(null, "arguments");
+                    if (arguments != null)
+                        for (var argument : arguments.trim().split("\\s+"))
+                            descriptor.append(descriptor(types.get(argument)));
+                    descriptor.append(')').append(descriptor(types.get(xml.getAttributeValue(null, "return"))));
+
+                    methodKeys.put(id, key(holder.replace('.', '/'), xml.getAttributeValue(null, "name"), descriptor.toString()));
+                    var bytes = xml.getAttributeValue(null, "bytes");
+                    if (bytes != null)
+                        methodBytes.put(id, Integer.parseInt(bytes));
+                }
+
+                case "parse" -> {
+                    var key = methodKeys.get(xml.getAttributeValue(null, "method"));
+                    parseStack.push(key == null ? "" : key);
+                    if (key != null && methodBytes.containsKey(xml.getAttributeValue(null, "method")))
+                        info(key).bytes = methodBytes.get(xml.getAttributeValue(null, "method"));
+                    bci = -1;
+                }
+
+                case "parse_done" -> {
+                    if (!parseStack.isEmpty())
+                        parseStack.pop();
+                }
+
+                case "bc" -> bci = Integer.parseInt(xml.getAttributeValue(null, "bci"));
+
+                case "call" -> callee = methodKeys.get(xml.getAttributeValue(null, "method"));
+
+                case "inline_success", "inline_fail" -> {
+                    if (parseStack.isEmpty() || parseStack.peek().isEmpty() || bci < 0)
+                        continue;
+                    var reason = xml.getAttributeValue(null, "reason");
+                    var calleeName = (callee == null) ? "?" : callee.substring(callee.indexOf(' ') + 1).replace(" ", "");
+                    var decision = xml.getLocalName().equals("inline_success")
+                            ? String.format("tier %d inlined %s (%s)", tier, calleeName, reason)
+                            : String.format("tier %d did not inline %s: %s", tier, calleeName, reason);
+                    info(parseStack.peek()).decisions.computeIfAbsent(bci, i -> new LinkedHashSet<>()).add(decision);
+                }
+
+                default -> {}
+            }
+        }
+    }
+
+    private MethodInfo info(String key) {
+        return methods.computeIfAbsent(key, k -> new MethodInfo());
+    }
+
+    // Task methods look like "java.lang.String charAt (I)C"
+    private static String taskMethodKey(String method) {
+        var parts = method.split(" ");
+        if (parts.length != 3)
+            return method;
+        return key(parts[0].replace('.', '/'), parts[1], parts[2]);
+    }
+
+    private static String key(String className, String methodName, String descriptor) {
+        return className + " " + methodName + " " + descriptor;
+    }
+
+    private static String descriptor(String typeName) {
+        if (typeName == null)
+            return "?";
+        return switch (typeName) {
+            case "void" -> "V";
+            case "boolean" -> "Z";
+            case "byte" -> "B";
+            case "char" -> "C";
+            case "short" -> "S";
+            case "int" -> "I";
+            case "long" -> "J";
+            case "float" -> "F";
+            case "double" -> "D";
+            default -> typeName.startsWith("[")
+                    ? typeName.replace('.', '/')
+                    : "L" + typeName.replace('.', '/') + ";";
+        };
+    }
+
+    public static void main(String... args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: InliningLog <LogCompilation file> <jar/class/directory/jrt:/> [class name...]");
+            return;
+        }
+
+        var log = read(Path.of(args[0]));
+        Set<String> wanted = args.length > 2
+                ? new HashSet<>(Arrays.asList(args).subList(2, args.length))
+                : log.classNames();
+
+        var out = new PrintWriter(System.out);
+        try (var classes = ClassEntries.stream(args[1])) {
+            for (var entry : (Iterable<ClassEntries.Entry>)classes.filter(e -> wanted.contains(e.name()))::iterator) {
+                try {
+                    var classfile = new ClassfileReader().read(entry.buffer());
+                    new Disassembler(classfile, log).disassemble(out);
+                } catch (InvalidClassException | UnsupportedClassFeatureException ex) {
+                    System.err.printf("%s: %s\n", entry.name(), ex.getMessage());
+                }
+            }
+        }
+        out.flush();
+    }
+}
@@ -0,0 +1,205 @@
+package edu.westminstercollege.cs.jade.analysis;
+
+import edu.westminstercollege.cs.jade.ClassfileReader;
+import edu.westminstercollege.cs.jade.InvalidClassException;
+import edu.westminstercollege.cs.jade.UnsupportedClassFeatureException;
+import edu.westminstercollege.cs.jade.classfile.Classfile;
+import edu.westminstercollege.cs.jade.classfile.Code;
+import edu.westminstercollege.cs.jade.classfile.ConstantPool;
+import edu.westminstercollege.cs.jade.classfile.Fingerprints;
+import edu.westminstercollege.cs.jade.classfile.instruction.Instruction;
+import edu.westminstercollege.cs.jade.classfile.instruction.Opcode;
+import edu.westminstercollege.cs.jade.classfile.instruction.Operand;
+import edu.westminstercollege.cs.jade.util.ClassEntries;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Flags bytecode patterns that tend to get in the way of the JIT: methods too big to compile or inline, interface
+ * calls, and boxing, locking and exception handlers around loops.
+ */
+public class JitLinter {
+
+    public enum Severity {
+        Info, Warning
+    }
+
+    public enum Kind {
+        HugeMethod, JustAboveInlineSize, InterfaceCall, BoxingInLoop, MonitorInLoop, HandlerWrapsLoop, Undecodable
+    }
+
+    /**
+     * A single finding; {@code bci} is -1 for findings about a method as a whole.
+     */
+    public record Finding(String className, String methodName, String descriptor, int bci,
+                          Kind kind, Severity severity, String message) {}
+
+    private final SizeReport.Thresholds thresholds;
+
+    /**
+     * Methods up to this many percent larger than an inlining limit count as "just above" it.
+     */
+    private final int nearLimitPercent;
+
+    public JitLinter(SizeReport.Thresholds thresholds, int nearLimitPercent) {
+        this.thresholds = thresholds;
+        this.nearLimitPercent = nearLimitPercent;
+    }
+
+    public JitLinter() {
+        this(SizeReport.Thresholds.DEFAULT, 25);
+    }
+
+    /**
+     * Lints every class at a location in parallel, returning findings grouped by class in name order.
+     */
+    public SortedMap<String, List<Finding>> lint(String location) throws IOException {
+        try (var classes = ClassEntries.stream(location)) {
+            return classes.parallel()
+                    .flatMap(this::lint)
+                    .collect(Collectors.groupingByConcurrent(Finding::className))
+                    .entrySet().stream()
+                    .collect(Collectors.toMap(Map.Entry::getKey, e -> sorted(e.getValue()), (a, b) -> a, TreeMap::new));
+        }
+    }
+
+    private Stream<Finding> lint(ClassEntries.Entry entry) {
+        try {
+            return lint(new ClassfileReader().read(entry.buffer())).stream();
+        } catch (InvalidClassException | UnsupportedClassFeatureException | RuntimeException ex) {
+            return Stream.of(new Finding(entry.name(), "", "", -1, Kind.Undecodable, Severity.Info, ex.getMessage()));
+        }
+    }
+
+    public List<Finding> lint(Classfile cf) {
+        var cp = cf.constantPool();
+        var className = cp.string(cp.clazz(cf.thisClass()));
+        List<Finding> findings = new ArrayList<>();
+
+        for (var method : cf.methods()) {
+            var name = cp.string(method.nameIndex());
+            var descriptor = cp.string(method.descriptorIndex());
+            try {
+                var code = Fingerprints.code(method, cp);
+                if (code != null)
+                    lintMethod(new MethodContext(className, name, descriptor, findings), code, cp);
+            } catch (InvalidClassException | RuntimeException ex) {
+                findings.add(new Finding(className, name, descriptor, -1, Kind.Undecodable, Severity.Info, ex.getMessage()));
+            }
+        }
+
+        return findings;
+    }
+
+    private record MethodContext(String className, String name, String descriptor, List<Finding> findings) {
+
+        void add(int bci, Kind kind, Severity severity, String message, Object... args) {
+            findings.add(new Finding(className, name, descriptor, bci, kind, severity, String.format(message, args)));
+        }
+    }
+
+    private void lintMethod(MethodContext m, Code code, ConstantPool cp) throws InvalidClassException {
+        int size = code.code().length;
+
+        if (size > thresholds.hugeMethodLimit())
+            m.add(-1, Kind.HugeMethod, Severity.Warning,
+                    "%d bytes exceeds HugeMethodLimit (%d); will not be JIT-compiled", size, thresholds.hugeMethodLimit());
+        else if (isJustAbove(size, thresholds.maxInlineSize()))
+            m.add(-1, Kind.JustAboveInlineSize, Severity.Info,
+                    "%d bytes is just above MaxInlineSize (%d); only inlined when hot", size, thresholds.maxInlineSize());
+        else if (isJustAbove(size, thresholds.freqInlineSize()))
+            m.add(-1, Kind.JustAboveInlineSize, Severity.Warning,
+                    "%d bytes is just above FreqInlineSize (%d); not inlined even when hot", size, thresholds.freqInlineSize());
+
+        var loops = Loops.find(code);
+
+        var b = ByteBuffer.wrap(code.code());
+        boolean wide = false;
+        while (b.hasRemaining()) {
+            int bci = b.position();
+            var instr = Instruction.read(b, cp, wide);
+
+            switch (instr.opcode()) {
+                case INVOKEINTERFACE -> {
+                    var target = (Operand.Method)instr.operands().get(0);
+                    m.add(bci, Kind.InterfaceCall, loops.inLoop(bci) ? Severity.Warning : Severity.Info,
+                            "invokeinterface %s.%s%s%s", target.className(), target.methodName(), target.descriptor(),
+                            loops.inLoop(bci) ? " in loop" : "");
+                }
+
+                case INVOKESTATIC -> {
+                    var target = (Operand.Method)instr.operands().get(0);
+                    if (loops.inLoop(bci) && Boxing.isBoxing(target))
+                        m.add(bci, Kind.BoxingInLoop, Severity.Warning,
+                                "boxing call %s.valueOf%s in loop", target.className(), target.descriptor());
+                }
+
+                case MONITORENTER -> {
+                    if (loops.inLoop(bci))
+                        m.add(bci, Kind.MonitorInLoop, Severity.Warning, "monitorenter in loop");
+                }
+
+                default -> {}
+            }
+
+            wide = (instr.opcode() == Opcode.WIDE);
+        }
+
+        for (var handler : code.exceptionTable()) {
+            var loop = loops.loopWithin(handler.startPc(), handler.endPc());
+            if (loop.isPresent())
+                m.add(handler.startPc(), Kind.HandlerWrapsLoop, Severity.Info,
+                        "exception handler at %d covers loop %d-%d", handler.handlerPc(),
+                        loop.get().start(), loop.get().end());
+        }
+    }
+
+    private boolean isJustAbove(int size, int limit) {
+        return size > limit && size <= limit + Math.max(1, limit * nearLimitPercent / 100);
+    }
+
+    private static List<Finding> sorted(List<Finding> findings) {
+        var sorted = new ArrayList<>(findings);
+        sorted.sort(Comparator.comparing(Finding::methodName)
+                .thenComparing(Finding::descriptor)
+                .thenComparingInt(Finding::bci));
+        return sorted;
+    }
+
+    public static void print(PrintWriter out, SortedMap<String, List<Finding>> findings) {
+        for (var entry : findings.entrySet()) {
+            out.println(entry.getKey());
+            String lastMethod = null;
+            for (var finding : entry.getValue()) {
+                var method = finding.methodName() + " " + finding.descriptor();
+                if (!method.equals(lastMethod)) {
+                    out.printf("    %s\n", method);
+                    lastMethod = method;
+                }
+                out.printf("        %-7s %-20s %s%s\n",
+                        finding.severity().toString().toLowerCase(),
+                        finding.kind(),
+                        finding.bci() >= 0 ? "@" + finding.bci() + ": " : "",
+                        finding.message());
+            }
+        }
+        out.flush();
+    }
+
+    public static void main(String... args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: JitLinter <jar/class/directory/jrt:/>...");
+            return;
+        }
+
+        var linter = new JitLinter();
+        var out = new PrintWriter(System.out);
+        for (var location : args)
+            print(out, linter.lint(location));
+    }
+}
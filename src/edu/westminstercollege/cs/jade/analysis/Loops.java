@@ -0,0 +1,83 @@
+package edu.westminstercollege.cs.jade.analysis;
+
+import edu.westminstercollege.cs.jade.InvalidClassException;
+import edu.westminstercollege.cs.jade.classfile.Code;
+import edu.westminstercollege.cs.jade.classfile.instruction.CodeWalker;
+import edu.westminstercollege.cs.jade.classfile.instruction.Opcode;
+
+import java.util.*;
+
+/**
+ * Loops in a method, found from its backward branches. javac lays loops out so that each one has a backward jump
+ * (goto, conditional branch or switch) from the end of its body to its header; the loop is taken to span everything
+ * from the header to the last such jump. This over-approximates some irreducible control flow, which is fine for
+ * linting purposes.
+ */
+public final class Loops {
+
+    public record Loop(int start, int end) {
+
+        /**
+         * Whether the instruction at the given offset is in the loop (end being the offset of the backward branch).
+         */
+        public boolean contains(int bci) {
+            return bci >= start && bci <= end;
+        }
+
+        public boolean isWithin(int rangeStart, int rangeEnd) {
+            return start >= rangeStart && end < rangeEnd;
+        }
+    }
+
+    private final List<Loop> loops;
+
+    private Loops(List<Loop> loops) {
+        this.loops = loops;
+    }
+
+    public static Loops find(Code code) throws InvalidClassException {
+        Map<Integer, Integer> ends = new TreeMap<>();
+        var walker = new CodeWalker(code.code());
+        while (walker.next()) {
+            int bci = walker.bci();
+            if (walker.opcode() == Opcode.TABLESWITCH || walker.opcode() == Opcode.LOOKUPSWITCH) {
+                for (int target : walker.switchTargets())
+                    if (target <= bci)
+                        ends.merge(target, bci, Math::max);
+            } else {
+                int target = walker.branchTarget();
+                if (target >= 0 && target <= bci && walker.opcode() != Opcode.JSR && walker.opcode() != Opcode.JWR_W)
+                    ends.merge(target, bci, Math::max);
+            }
+        }
+
+        List<Loop> loops = new ArrayList<>(ends.size());
+        ends.forEach((start, end) -> loops.add(new Loop(start, end)));
+        return new Loops(loops);
+    }
+
+    public List<Loop> loops() {
+        return Collections.unmodifiableList(loops);
+    }
+
+    public boolean isEmpty() {
+        return loops.isEmpty();
+    }
+
+    public boolean inLoop(int bci) {
+        for (var loop : loops)
+            if (loop.contains(bci))
+                return true;
+        return false;
+    }
+
+    /**
+     * Returns the first loop lying entirely within [start, end), if any.
+     */
+    public Optional<Loop> loopWithin(int start, int end) {
+        for (var loop : loops)
+            if (loop.isWithin(start, end))
+                return Optional.of(loop);
+        return Optional.empty();
+    }
+}
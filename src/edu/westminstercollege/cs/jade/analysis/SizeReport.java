@@ -0,0 +1,251 @@
+package edu.westminstercollege.cs.jade.analysis;
+
+import edu.westminstercollege.cs.jade.ClassfileReader;
+import edu.westminstercollege.cs.jade.InvalidClassException;
+import edu.westminstercollege.cs.jade.UnsupportedClassFeatureException;
+import edu.westminstercollege.cs.jade.classfile.Fingerprints;
+import edu.westminstercollege.cs.jade.classfile.instruction.CodeWalker;
+import edu.westminstercollege.cs.jade.util.ClassEntries;
+import edu.westminstercollege.cs.jade.util.JsonWriter;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Compares per-method bytecode sizes between two builds and flags methods that crossed HotSpot's inlining and
+ * compilation size limits. A method new in the second build counts as having had size 0, so a new method that is
+ * already over a limit is flagged too.
+ */
+public class SizeReport {
+
+    /**
+     * Size limits, in bytes of bytecode. The defaults are HotSpot's MaxInlineSize, FreqInlineSize and HugeMethodLimit.
+     */
+    public record Thresholds(int maxInlineSize, int freqInlineSize, int hugeMethodLimit) {
+
+        public static final Thresholds DEFAULT = new Thresholds(35, 325, 8000);
+
+        List<String> crossed(int before, int after) {
+            List<String> crossed = new ArrayList<>(1);
+            check(crossed, "MaxInlineSize", maxInlineSize, before, after);
+            check(crossed, "FreqInlineSize", freqInlineSize, before, after);
+            check(crossed, "HugeMethodLimit", hugeMethodLimit, before, after);
+            return crossed;
+        }
+
+        /**
+         * The limits a new method is already over, as if it had grown from nothing.
+         */
+        List<String> exceeded(int size) {
+            List<String> exceeded = new ArrayList<>(1);
+            if (size > maxInlineSize)
+                exceeded.add(String.format("over MaxInlineSize (%d)", maxInlineSize));
+            if (size > freqInlineSize)
+                exceeded.add(String.format("over FreqInlineSize (%d)", freqInlineSize));
+            if (size > hugeMethodLimit)
+                exceeded.add(String.format("over HugeMethodLimit (%d)", hugeMethodLimit));
+            return exceeded;
+        }
+
+        private static void check(List<String> crossed, String name, int limit, int before, int after) {
+            // HotSpot's checks are all "size > limit"
+            if (before <= limit && after > limit)
+                crossed.add(String.format("grew past %s (%d)", name, limit));
+            else if (before > limit && after <= limit)
+                crossed.add(String.format("shrank within %s (%d)", name, limit));
+        }
+    }
+
+    public record MethodSize(String className, String name, String descriptor,
+                             int codeLength, int maxStack, int maxLocals,
+                             int constantPoolSize, int invocations) {
+
+        String key() {
+            return className + "." + name + descriptor;
+        }
+    }
+
+    /**
+     * A method that crossed a threshold; {@code before} is empty for a method new in the second build.
+     */
+    public record Entry(Optional<MethodSize> before, MethodSize after, List<String> crossed) {
+
+        public boolean isNew() {
+            return before.isEmpty();
+        }
+
+        int growth() {
+            return after.codeLength() - before.map(MethodSize::codeLength).orElse(0);
+        }
+    }
+
+    private final Thresholds thresholds;
+
+    public SizeReport(Thresholds thresholds) {
+        this.thresholds = thresholds;
+    }
+
+    /**
+     * Collects the sizes of all methods with code at a location, in parallel.
+     */
+    public static Map<String, MethodSize> collect(String location) throws IOException {
+        try (var classes = ClassEntries.stream(location)) {
+            return classes.parallel()
+                    .flatMap(SizeReport::methodSizes)
+                    .collect(Collectors.toConcurrentMap(MethodSize::key, m -> m, (a, b) -> a));
+        }
+    }
+
+    private static Stream<MethodSize> methodSizes(ClassEntries.Entry entry) {
+        try {
+            var cf = new ClassfileReader().read(entry.buffer());
+            var cp = cf.constantPool();
+            var className = cp.string(cp.clazz(cf.thisClass()));
+
+            List<MethodSize> sizes = new ArrayList<>(cf.methods().length);
+            for (var method : cf.methods()) {
+                var code = Fingerprints.code(method, cp);
+                if (code == null)
+                    continue;
+
+                int invocations = 0;
+                var walker = new CodeWalker(code.code());
+                while (walker.next()) {
+                    switch (walker.opcode()) {
+                        case INVOKEVIRTUAL, INVOKESPECIAL, INVOKESTATIC, INVOKEINTERFACE, INVOKEDYNAMIC -> ++invocations;
+                        default -> {}
+                    }
+                }
+
+                sizes.add(new MethodSize(className, cp.string(method.nameIndex()), cp.string(method.descriptorIndex()),
+                        code.code().length, code.maxStack(), code.maxLocals(), cp.size(), invocations));
+            }
+            return sizes.stream();
+        } catch (InvalidClassException | UnsupportedClassFeatureException | RuntimeException ex) {
+            System.err.printf("%s: %s\n", entry.name(), ex.getMessage());
+            return Stream.empty();
+        }
+    }
+
+    /**
+     * Returns the methods in the second build that crossed a threshold, largest growth first. Methods removed in the
+     * second build are not reported.
+     */
+    public List<Entry> compare(Map<String, MethodSize> before, Map<String, MethodSize> after) {
+        return after.values().parallelStream()
+                .map(a -> {
+                    var b = Optional.ofNullable(before.get(a.key()));
+                    var crossed = b.isPresent()
+                            ? thresholds.crossed(b.get().codeLength(), a.codeLength())
+                            : thresholds.exceeded(a.codeLength());
+                    return crossed.isEmpty() ? null : new Entry(b, a, crossed);
+                })
+                .filter(Objects::nonNull)
+                .sorted(Comparator.comparingInt(Entry::growth)
+                        .reversed()
+                        .thenComparing(e -> e.after().key()))
+                .toList();
+    }
+
+    public void printText(PrintWriter out, List<Entry> entries) {
+        out.printf("%d method(s) crossed size thresholds (MaxInlineSize=%d, FreqInlineSize=%d, HugeMethodLimit=%d)\n",
+                entries.size(), thresholds.maxInlineSize(), thresholds.freqInlineSize(), thresholds.hugeMethodLimit());
+
+        for (var entry : entries) {
+            var a = entry.after();
+            out.printf("\n%s.%s %s%s\n", a.className(), a.name(), a.descriptor(), entry.isNew() ? " (new)" : "");
+            out.printf("    %s\n", String.join(", ", entry.crossed()));
+            if (entry.isNew()) {
+                out.printf("    code length   %6d\n", a.codeLength());
+                out.printf("    max stack     %6d\n", a.maxStack());
+                out.printf("    max locals    %6d\n", a.maxLocals());
+                out.printf("    pool size     %6d\n", a.constantPoolSize());
+                out.printf("    invocations   %6d\n", a.invocations());
+                continue;
+            }
+
+            var b = entry.before().get();
+            out.printf("    code length   %6d -> %6d\n", b.codeLength(), a.codeLength());
+            out.printf("    max stack     %6d -> %6d\n", b.maxStack(), a.maxStack());
+            out.printf("    max locals    %6d -> %6d\n", b.maxLocals(), a.maxLocals());
+            out.printf("    pool size     %6d -> %6d\n", b.constantPoolSize(), a.constantPoolSize());
+            out.printf("    invocations   %6d -> %6d\n", b.invocations(), a.invocations());
+        }
+        out.flush();
+    }
+
+    public void printJson(PrintWriter out, List<Entry> entries) {
+        var json = new JsonWriter(out);
+        json.beginObject()
+                .name("thresholds").beginObject()
+                    .property("maxInlineSize", thresholds.maxInlineSize())
+                    .property("freqInlineSize", thresholds.freqInlineSize())
+                    .property("hugeMethodLimit", thresholds.hugeMethodLimit())
+                .endObject()
+                .name("methods").beginArray();
+
+        for (var entry : entries) {
+            json.beginObject()
+                    .property("class", entry.after().className())
+                    .property("name", entry.after().name())
+                    .property("descriptor", entry.after().descriptor())
+                    .property("new", entry.isNew())
+                    .name("crossed").beginArray();
+            for (var crossed : entry.crossed())
+                json.value(crossed);
+            json.endArray();
+            if (entry.before().isPresent())
+                writeSize(json, "before", entry.before().get());
+            writeSize(json, "after", entry.after());
+            json.endObject();
+        }
+
+        json.endArray().endObject();
+        out.println();
+        out.flush();
+    }
+
+    private static void writeSize(JsonWriter json, String name, MethodSize size) {
+        json.name(name).beginObject()
+                .property("codeLength", size.codeLength())
+                .property("maxStack", size.maxStack())
+                .property("maxLocals", size.maxLocals())
+                .property("constantPoolSize", size.constantPoolSize())
+                .property("invocations", size.invocations())
+                .endObject();
+    }
+
+    public static void main(String... args) throws IOException {
+        boolean json = false;
+        int maxInline = Thresholds.DEFAULT.maxInlineSize(),
+            freqInline = Thresholds.DEFAULT.freqInlineSize(),
+            huge = Thresholds.DEFAULT.hugeMethodLimit();
+        List<String> locations = new ArrayList<>();
+
+        for (int i = 0; i < args.length; ++i) {
+            switch (args[i]) {
+                case "--json" -> json = true;
+                case "--max-inline" -> maxInline = Integer.parseInt(args[++i]);
+                case "--freq-inline" -> freqInline = Integer.parseInt(args[++i]);
+                case "--huge" -> huge = Integer.parseInt(args[++i]);
+                default -> locations.add(args[i]);
+            }
+        }
+
+        if (locations.size() != 2) {
+            System.err.println("Usage: SizeReport [--json] [--max-inline n] [--freq-inline n] [--huge n] <before> <after>");
+            return;
+        }
+
+        var report = new SizeReport(new Thresholds(maxInline, freqInline, huge));
+        var entries = report.compare(collect(locations.get(0)), collect(locations.get(1)));
+        var out = new PrintWriter(System.out);
+        if (json)
+            report.printJson(out, entries);
+        else
+            report.printText(out, entries);
+    }
+}
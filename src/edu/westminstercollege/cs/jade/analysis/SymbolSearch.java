@@ -0,0 +1,281 @@
+package edu.westminstercollege.cs.jade.analysis;
+
+import edu.westminstercollege.cs.jade.ClassfileReader;
+import edu.westminstercollege.cs.jade.Disassembler;
+import edu.westminstercollege.cs.jade.InvalidClassException;
+import edu.westminstercollege.cs.jade.UnsupportedClassFeatureException;
+import edu.westminstercollege.cs.jade.classfile.Constant;
+import edu.westminstercollege.cs.jade.classfile.ConstantPool;
+import edu.westminstercollege.cs.jade.classfile.Fingerprints;
+import edu.westminstercollege.cs.jade.classfile.instruction.Instruction;
+import edu.westminstercollege.cs.jade.classfile.instruction.Opcode;
+import edu.westminstercollege.cs.jade.classfile.instruction.Operand;
+import edu.westminstercollege.cs.jade.util.BloomFilter;
+import edu.westminstercollege.cs.jade.util.ClassEntries;
+import edu.westminstercollege.cs.jade.util.Hash64;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Finds the instructions that use a set of symbols: classes ({@code java/util/zip/CRC32}), members by name
+ * ({@code java/util/zip/CRC32.update}) or members by name and descriptor ({@code java/util/zip/CRC32.update (I)V}).
+ *
+ * <p>A class can only use a symbol if its constant pool mentions it, so each class's pool is read first, without
+ * the rest of the class, and only the classes whose pools match are decoded. Given a filter file, the pool's
+ * contents are also summarized in a Bloom filter per class and saved, so later searches can skip classes without
+ * reading even their pools.</p>
+ */
+public final class SymbolSearch {
+
+    public record Use(String className, String methodName, String descriptor, int bci, String symbol, String instruction) {}
+
+    private static final int MAGIC = 0x4A41_4442; // "JADB"
+    private static final int VERSION = 1;
+
+    private record StoredFilter(long hash, BloomFilter filter) {}
+
+    private final Set<String> symbols;
+    private final Path filterFile;
+    private final Map<String, StoredFilter> filters = new ConcurrentHashMap<>();
+    private volatile boolean filtersChanged = false;
+
+    private final AtomicInteger classes = new AtomicInteger();
+    private final AtomicInteger rejectedByFilter = new AtomicInteger();
+    private final AtomicInteger rejectedByPool = new AtomicInteger();
+    private final AtomicInteger decoded = new AtomicInteger();
+
+    /**
+     * Creates a search for the given symbols. {@code filterFile} may be null to read every class's pool.
+     */
+    public SymbolSearch(Collection<String> symbols, Path filterFile) throws IOException {
+        this.symbols = Set.copyOf(symbols);
+        this.filterFile = filterFile;
+        if (filterFile != null && Files.exists(filterFile))
+            readFilters(filterFile);
+    }
+
+    /**
+     * Searches every class at a location in parallel, returning uses in class and offset order.
+     */
+    public List<Use> search(String location) throws IOException {
+        try (var entries = ClassEntries.stream(location)) {
+            return entries.parallel()
+                    .flatMap(this::search)
+                    .sorted(Comparator.comparing(Use::className)
+                            .thenComparing(Use::methodName)
+                            .thenComparing(Use::descriptor)
+                            .thenComparingInt(Use::bci))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private Stream<Use> search(ClassEntries.Entry entry) {
+        classes.incrementAndGet();
+        try {
+            if (!mayUseSymbols(entry))
+                return Stream.empty();
+            decoded.incrementAndGet();
+            return uses(entry).stream();
+        } catch (InvalidClassException | UnsupportedClassFeatureException | RuntimeException ex) {
+            System.err.printf("%s: %s\n", entry.name(), ex.getMessage());
+            return Stream.empty();
+        }
+    }
+
+    private boolean mayUseSymbols(ClassEntries.Entry entry) throws InvalidClassException, UnsupportedClassFeatureException {
+        long hash = 0;
+        boolean filterIsCurrent = false;
+        if (filterFile != null) {
+            hash = Hash64.of(entry.bytes());
+            var stored = filters.get(entry.name());
+            if (stored != null && stored.hash() == hash) {
+                if (symbols.stream().noneMatch(stored.filter()::mightContain)) {
+                    rejectedByFilter.incrementAndGet();
+                    return false;
+                }
+                // Possibly a false positive; the pool check below is still much cheaper than decoding
+                filterIsCurrent = true;
+            }
+        }
+
+        var keys = poolKeys(entry.buffer());
+        if (filterFile != null && !filterIsCurrent) {
+            var filter = BloomFilter.forKeys(keys.size());
+            keys.forEach(filter::add);
+            filters.put(entry.name(), new StoredFilter(hash, filter));
+            filtersChanged = true;
+        }
+
+        for (var key : keys)
+            if (symbols.contains(key))
+                return true;
+        rejectedByPool.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Reads just the constant pool of a class and returns the symbols it can refer to: every Utf8 string (which
+     * covers class names), and "owner.name" and "owner.name descriptor" for every field and method reference.
+     */
+    private static Set<String> poolKeys(ByteBuffer bytes) throws InvalidClassException, UnsupportedClassFeatureException {
+        if (bytes.getInt() != 0xCAFEBABE)
+            throw new InvalidClassException("Invalid magic number");
+        bytes.position(8);
+        var cp = new ConstantPool(new ClassfileReader().readConstantPool(bytes));
+
+        Set<String> keys = new HashSet<>(cp.size() * 2);
+        for (var constant : cp.constants()) {
+            switch (constant) {
+                case Constant.Utf8(String value) -> keys.add(value);
+                case Constant.FieldRef(int classIndex, int natIndex) -> addMember(keys, cp, classIndex, natIndex);
+                case Constant.MethodRef(int classIndex, int natIndex) -> addMember(keys, cp, classIndex, natIndex);
+                case Constant.InterfaceMethodRef(int classIndex, int natIndex) -> addMember(keys, cp, classIndex, natIndex);
+                case null, default -> {}
+            }
+        }
+        return keys;
+    }
+
+    private static void addMember(Set<String> keys, ConstantPool cp, int classIndex, int natIndex) {
+        var nat = cp.nameAndType(natIndex);
+        var member = cp.string(cp.clazz(classIndex)) + "." + cp.string(nat.nameIndex());
+        keys.add(member);
+        keys.add(member + " " + cp.string(nat.descriptorIndex()));
+    }
+
+    private List<Use> uses(ClassEntries.Entry entry) throws InvalidClassException, UnsupportedClassFeatureException {
+        var cf = new ClassfileReader().read(entry.buffer());
+        var cp = cf.constantPool();
+        var className = cp.string(cp.clazz(cf.thisClass()));
+
+        List<Use> uses = new ArrayList<>();
+        for (var method : cf.methods()) {
+            var code = Fingerprints.code(method, cp);
+            if (code == null)
+                continue;
+            var name = cp.string(method.nameIndex());
+            var descriptor = cp.string(method.descriptorIndex());
+
+            var b = ByteBuffer.wrap(code.code());
+            boolean wide = false;
+            while (b.hasRemaining()) {
+                int bci = b.position();
+                var instr = Instruction.read(b, cp, wide);
+                for (var operand : instr.operands()) {
+                    var symbol = matchingSymbol(operand);
+                    if (symbol != null)
+                        uses.add(new Use(className, name, descriptor, bci, symbol, text(instr)));
+                }
+                wide = (instr.opcode() == Opcode.WIDE);
+            }
+        }
+        return uses;
+    }
+
+    private String matchingSymbol(Operand operand) {
+        return switch (operand) {
+            case Operand.Method(String owner, String name, String descriptor) -> matchingMember(owner, name, descriptor);
+            case Operand.Field(String owner, String name, String descriptor) -> matchingMember(owner, name, descriptor);
+            case Operand.RefType(String name) -> symbols.contains(name) ? name : null;
+            case Operand.Imm8.Class(String name) -> symbols.contains(name) ? name : null;
+            case Operand.Imm16.Class(String name) -> symbols.contains(name) ? name : null;
+            default -> null;
+        };
+    }
+
+    private String matchingMember(String owner, String name, String descriptor) {
+        var member = owner + "." + name;
+        if (symbols.contains(member + " " + descriptor))
+            return member + " " + descriptor;
+        if (symbols.contains(member))
+            return member;
+        return symbols.contains(owner) ? owner : null;
+    }
+
+    private static String text(Instruction instr) {
+        var text = new StringBuilder(instr.opcode().mnemonic());
+        for (var operand : instr.operands())
+            text.append(' ').append(Disassembler.operandText(operand));
+        return text.toString();
+    }
+
+    public void printStats(PrintWriter out) {
+        out.printf("%d classes: %d skipped by Bloom filter, %d skipped by constant pool, %d decoded\n",
+                classes.get(), rejectedByFilter.get(), rejectedByPool.get(), decoded.get());
+        out.flush();
+    }
+
+    private void readFilters(Path file) throws IOException {
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                System.err.printf("%s: not a filter file for this version; rebuilding\n", file);
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; ++i) {
+                var name = in.readUTF();
+                long hash = in.readLong();
+                filters.put(name, new StoredFilter(hash, BloomFilter.read(in)));
+            }
+        }
+    }
+
+    /**
+     * Saves the Bloom filters of every class seen so far, if any were added or changed.
+     */
+    public void saveFilters() throws IOException {
+        if (filterFile == null || !filtersChanged)
+            return;
+
+        var parent = filterFile.toAbsolutePath().getParent();
+        var temp = Files.createTempFile(parent, filterFile.getFileName().toString(), ".tmp");
+        try {
+            try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(filters.size());
+                for (var entry : new TreeMap<>(filters).entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeLong(entry.getValue().hash());
+                    entry.getValue().filter().write(out);
+                }
+            }
+            Files.move(temp, filterFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        filtersChanged = false;
+    }
+
+    public static void main(String... args) throws IOException {
+        Path filterFile = null;
+        List<String> rest = new ArrayList<>();
+        for (int i = 0; i < args.length; ++i) {
+            if (args[i].equals("--filters") && i + 1 < args.length)
+                filterFile = Path.of(args[++i]);
+            else
+                rest.add(args[i]);
+        }
+
+        if (rest.size() < 2) {
+            System.err.println("Usage: SymbolSearch [--filters <file>] <jar/class/directory/jrt:/> <symbol>...");
+            return;
+        }
+
+        var search = new SymbolSearch(rest.subList(1, rest.size()), filterFile);
+        var out = new PrintWriter(System.out);
+        for (var use : search.search(rest.get(0)))
+            out.printf("%s.%s%s @%d: %s\n", use.className(), use.methodName(), use.descriptor(), use.bci(), use.instruction());
+        search.printStats(out);
+        search.saveFilters();
+    }
+}
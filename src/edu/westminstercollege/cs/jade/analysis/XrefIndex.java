@@ -0,0 +1,521 @@
+package edu.westminstercollege.cs.jade.analysis;
+
+import edu.westminstercollege.cs.jade.ClassfileReader;
+import edu.westminstercollege.cs.jade.InvalidClassException;
+import edu.westminstercollege.cs.jade.UnsupportedClassFeatureException;
+import edu.westminstercollege.cs.jade.classfile.Fingerprints;
+import edu.westminstercollege.cs.jade.classfile.instruction.Instruction;
+import edu.westminstercollege.cs.jade.classfile.instruction.Opcode;
+import edu.westminstercollege.cs.jade.classfile.instruction.Operand;
+import edu.westminstercollege.cs.jade.util.ClassEntries;
+import edu.westminstercollege.cs.jade.util.Hash64;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A persistent cross-reference index: which methods call a method, read or write a field, or refer to a class.
+ *
+ * <p>The index file is memory-mapped and never loaded as a whole. It holds a sorted string dictionary (member
+ * targets look like {@code java/lang/String.length ()I}, class targets are plain internal names), a table of the
+ * indexed classes with a hash of each one's bytes, and the edges as int columns sorted by target. A lookup is a binary
+ * search in the dictionary followed by one in the target column; since member targets start with their owner's name,
+ * all the references to a class's members form one contiguous range. Each section is mapped on its own, so only the
+ * individual sections are limited to 2 GB.</p>
+ *
+ * <p>{@link #update} rebuilds the index from a set of locations, decoding only the classes whose bytes have changed
+ * since the previous index. The edges of every other class are copied across from the old index, which also lists
+ * each class's edges, translating only their string ids.</p>
+ */
+public final class XrefIndex implements AutoCloseable {
+
+    public enum Kind {
+        Invoke, Read, Write, Type
+    }
+
+    public record Reference(Kind kind, String target, String className, String methodName, String descriptor, int bci) {}
+
+    public record UpdateStats(int reused, int decoded, int edges) {}
+
+    private static final int MAGIC = 0x4A41_4458; // "JADX"
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 5 * 4;
+    // Name id, hash and the position of the class's first edge in byClass
+    private static final int CLASS_SIZE = 4 + 8 + 4;
+
+    private static final Kind[] KINDS = Kind.values();
+
+    private final FileChannel channel;
+    private final int stringCount, classCount, edgeCount;
+    private final IntBuffer stringOffsets;
+    private final ByteBuffer classes;
+    // Edges, sorted by target, kind, class, method and offset
+    private final IntBuffer targets, kinds, sources, methods, bcis;
+    // Edge numbers grouped by class, in class order
+    private final IntBuffer byClass;
+    private final ByteBuffer blob;
+
+    private XrefIndex(FileChannel channel) throws IOException {
+        this.channel = channel;
+        var header = map(0, HEADER_SIZE);
+        if (header.getInt(0) != MAGIC)
+            throw new IOException("Not a cross-reference index");
+        if (header.getInt(4) != VERSION)
+            throw new IOException(String.format("Index has version %d; expected %d", header.getInt(4), VERSION));
+        stringCount = header.getInt(8);
+        classCount = header.getInt(12);
+        edgeCount = header.getInt(16);
+        if (stringCount < 0 || classCount < 0 || edgeCount < 0)
+            throw new IOException("Corrupt cross-reference index");
+
+        long p = HEADER_SIZE;
+        stringOffsets = map(p, (stringCount + 1) * 4L).asIntBuffer();
+        p += (stringCount + 1) * 4L;
+        classes = map(p, (long)classCount * CLASS_SIZE);
+        p += (long)classCount * CLASS_SIZE;
+        var columns = new IntBuffer[6];
+        for (int c = 0; c < columns.length; ++c) {
+            columns[c] = map(p, edgeCount * 4L).asIntBuffer();
+            p += edgeCount * 4L;
+        }
+        targets = columns[0];
+        kinds = columns[1];
+        sources = columns[2];
+        methods = columns[3];
+        bcis = columns[4];
+        byClass = columns[5];
+        blob = map(p, stringOffsets.get(stringCount));
+        if (p + blob.limit() != channel.size())
+            throw new IOException("Corrupt cross-reference index");
+    }
+
+    private ByteBuffer map(long position, long size) throws IOException {
+        if (size < 0 || size > Integer.MAX_VALUE || position + size > channel.size())
+            throw new IOException("Truncated cross-reference index");
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+    }
+
+    public static XrefIndex open(Path file) throws IOException {
+        var channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return new XrefIndex(channel);
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    public int classCount() {
+        return classCount;
+    }
+
+    public int edgeCount() {
+        return edgeCount;
+    }
+
+    /**
+     * Returns every reference to exactly the given target.
+     */
+    public List<Reference> references(String target) {
+        int id = findString(target);
+        return id < 0 ? List.of() : references(id, id + 1);
+    }
+
+    /**
+     * Returns every reference to a target starting with the given prefix, e.g. {@code java/lang/String.} for all
+     * of String's members.
+     */
+    public List<Reference> referencesWithPrefix(String prefix) {
+        int first = lowerBoundString(prefix);
+        int last = first;
+        while (last < stringCount && string(last).startsWith(prefix))
+            ++last;
+        return references(first, last);
+    }
+
+    private List<Reference> references(int firstTarget, int endTarget) {
+        List<Reference> found = new ArrayList<>();
+        for (int i = lowerBoundEdge(firstTarget); i < edgeCount; ++i) {
+            int target = targets.get(i);
+            if (target >= endTarget)
+                break;
+            var method = string(methods.get(i));
+            int space = method.indexOf(' ');
+            found.add(new Reference(KINDS[kinds.get(i)], string(target), string(sources.get(i)),
+                    method.substring(0, space), method.substring(space + 1), bcis.get(i)));
+        }
+        return found;
+    }
+
+    private String string(int id) {
+        int start = stringOffsets.get(id);
+        var bytes = new byte[stringOffsets.get(id + 1) - start];
+        blob.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int findString(String s) {
+        int id = lowerBoundString(s);
+        return id < stringCount && string(id).equals(s) ? id : -1;
+    }
+
+    private int lowerBoundString(String s) {
+        int lo = 0, hi = stringCount;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (string(mid).compareTo(s) < 0)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+
+    private int lowerBoundEdge(int target) {
+        int lo = 0, hi = edgeCount;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (targets.get(mid) < target)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+
+    // Building and updating
+
+    private record Edge(Kind kind, String target, String method, int bci) {}
+
+    /**
+     * A class in the index being built: either reused from the old index, as its class number there, or decoded
+     * again, with its edges.
+     */
+    private record ClassEdges(String className, long hash, int oldClass, List<Edge> edges) {
+
+        ClassEdges(String className, long hash, List<Edge> edges) {
+            this(className, hash, -1, edges);
+        }
+    }
+
+    private int classNameId(int c) {
+        return classes.getInt(c * CLASS_SIZE);
+    }
+
+    private long classHash(int c) {
+        return classes.getLong(c * CLASS_SIZE + 4);
+    }
+
+    private int firstEdge(int c) {
+        return classes.getInt(c * CLASS_SIZE + 12);
+    }
+
+    private int endEdge(int c) {
+        return c + 1 < classCount ? firstEdge(c + 1) : edgeCount;
+    }
+
+    // Returns the class number of the given class, or -1
+    private int findClass(String name) {
+        int lo = 0, hi = classCount;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = string(classNameId(mid)).compareTo(name);
+            if (cmp == 0)
+                return mid;
+            if (cmp < 0)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return -1;
+    }
+
+    /**
+     * Builds the index for the given locations into {@code file}. If {@code file} already holds an index, classes
+     * whose bytes haven't changed keep their old edges instead of being decoded again.
+     */
+    public static UpdateStats update(Path file, List<String> locations) throws IOException {
+        XrefIndex previous = null;
+        if (Files.exists(file)) {
+            try {
+                previous = open(file);
+            } catch (IOException ex) {
+                System.err.printf("%s: %s; rebuilding\n", file, ex.getMessage());
+            }
+        }
+
+        try {
+            final var old = previous;
+            var reused = new AtomicInteger();
+            var decoded = new AtomicInteger();
+            Map<String, ClassEdges> current = new LinkedHashMap<>();
+            for (var location : locations) {
+                try (var entries = ClassEntries.stream(location)) {
+                    var scanned = entries.parallel()
+                            .map(entry -> {
+                                long hash = Hash64.of(entry.bytes());
+                                int cached = old == null ? -1 : old.findClass(entry.name());
+                                if (cached >= 0 && old.classHash(cached) == hash) {
+                                    reused.incrementAndGet();
+                                    return new ClassEdges(entry.name(), hash, cached, List.of());
+                                }
+                                decoded.incrementAndGet();
+                                return scan(entry, hash);
+                            })
+                            .toList();
+                    // Earlier locations win, as on a classpath
+                    for (var classEdges : scanned)
+                        current.putIfAbsent(classEdges.className(), classEdges);
+                }
+            }
+
+            int edgeCount = write(file, old, current.values());
+            return new UpdateStats(reused.get(), decoded.get(), edgeCount);
+        } finally {
+            if (previous != null)
+                previous.close();
+        }
+    }
+
+    private static ClassEdges scan(ClassEntries.Entry entry, long hash) {
+        List<Edge> edges = new ArrayList<>();
+        try {
+            var cf = new ClassfileReader().read(entry.buffer());
+            var cp = cf.constantPool();
+
+            for (var method : cf.methods()) {
+                var code = Fingerprints.code(method, cp);
+                if (code == null)
+                    continue;
+                var source = cp.string(method.nameIndex()) + " " + cp.string(method.descriptorIndex());
+
+                var b = ByteBuffer.wrap(code.code());
+                boolean wide = false;
+                while (b.hasRemaining()) {
+                    int bci = b.position();
+                    var instr = Instruction.read(b, cp, wide);
+                    for (var operand : instr.operands()) {
+                        switch (operand) {
+                            case Operand.Method m ->
+                                edges.add(new Edge(Kind.Invoke, member(m.className(), m.methodName(), m.descriptor()), source, bci));
+                            case Operand.Field f -> {
+                                var kind = (instr.opcode() == Opcode.GETFIELD || instr.opcode() == Opcode.GETSTATIC)
+                                        ? Kind.Read : Kind.Write;
+                                edges.add(new Edge(kind, member(f.className(), f.fieldName(), f.descriptor()), source, bci));
+                            }
+                            case Operand.RefType t -> edges.add(new Edge(Kind.Type, t.text(), source, bci));
+                            case Operand.Imm8.Class c -> edges.add(new Edge(Kind.Type, c.name(), source, bci));
+                            case Operand.Imm16.Class c -> edges.add(new Edge(Kind.Type, c.name(), source, bci));
+                            default -> {}
+                        }
+                    }
+                    wide = (instr.opcode() == Opcode.WIDE);
+                }
+            }
+        } catch (InvalidClassException | UnsupportedClassFeatureException | RuntimeException ex) {
+            System.err.printf("%s: %s\n", entry.name(), ex.getMessage());
+        }
+        // Undecodable classes are still recorded, so they aren't retried until they change
+        return new ClassEdges(entry.name(), hash, edges);
+    }
+
+    private static String member(String className, String name, String descriptor) {
+        return className + "." + name + " " + descriptor;
+    }
+
+    private static int write(Path file, XrefIndex old, Collection<ClassEdges> classEdges) throws IOException {
+        // Strings of reused classes stay in the old index and are only marked; only decoded classes' are Strings
+        int oldCount = old == null ? 0 : old.stringCount;
+        var usedOld = new BitSet(oldCount);
+        var added = new TreeSet<String>();
+        long edgeCount = 0;
+        for (var c : classEdges) {
+            if (c.oldClass() >= 0) {
+                usedOld.set(old.classNameId(c.oldClass()));
+                int end = old.endEdge(c.oldClass());
+                for (int j = old.firstEdge(c.oldClass()); j < end; ++j) {
+                    int e = old.byClass.get(j);
+                    usedOld.set(old.targets.get(e));
+                    usedOld.set(old.methods.get(e));
+                }
+                edgeCount += end - old.firstEdge(c.oldClass());
+            } else {
+                added.add(c.className());
+                for (var edge : c.edges()) {
+                    added.add(edge.target());
+                    added.add(edge.method());
+                }
+                edgeCount += c.edges().size();
+            }
+        }
+        if (edgeCount * 4 > Integer.MAX_VALUE)
+            throw new IOException("Index would be too large (" + edgeCount + " edges)");
+
+        // The new dictionary is the used old strings with the new ones merged in at their insertion points. It's
+        // recorded as a list of entries: an old string id, or -1 - i for the ith new string.
+        List<byte[]> fresh = new ArrayList<>();
+        var freshAt = new int[added.size()];
+        Map<String, Integer> ids = new HashMap<>(added.size() * 2);
+        for (var s : added) {
+            int at = old == null ? 0 : old.lowerBoundString(s);
+            if (at < oldCount && old.string(at).equals(s)) {
+                usedOld.set(at);
+                ids.put(s, -1 - at);
+            } else {
+                ids.put(s, fresh.size());
+                freshAt[fresh.size()] = at;
+                fresh.add(s.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        var oldToNew = new int[oldCount];
+        var freshToNew = new int[fresh.size()];
+        var entries = new int[usedOld.cardinality() + fresh.size()];
+        int stringCount = 0;
+        long blobSize = 0;
+        for (int o = 0, k = 0; o <= oldCount; ++o) {
+            for (; k < fresh.size() && freshAt[k] == o; ++k) {
+                freshToNew[k] = stringCount;
+                entries[stringCount++] = -1 - k;
+                blobSize += fresh.get(k).length;
+            }
+            if (o < oldCount && usedOld.get(o)) {
+                oldToNew[o] = stringCount;
+                entries[stringCount++] = o;
+                blobSize += old.stringOffsets.get(o + 1) - old.stringOffsets.get(o);
+            }
+        }
+        if (blobSize > Integer.MAX_VALUE)
+            throw new IOException("Index would be too large (" + blobSize + " bytes of strings)");
+        for (var id : ids.entrySet()) {
+            int value = id.getValue();
+            id.setValue(value < 0 ? oldToNew[-1 - value] : freshToNew[value]);
+        }
+
+        // Gather the edges into columns, reused ones straight from the old index's columns
+        int n = (int)edgeCount;
+        int[] targets = new int[n], kinds = new int[n], sources = new int[n], methods = new int[n], bcis = new int[n];
+        int[] classIds = new int[classEdges.size()], classEdgeCounts = new int[classEdges.size()];
+        long[] hashes = new long[classEdges.size()];
+        int i = 0, row = 0;
+        for (var c : classEdges) {
+            int start = i;
+            int source = c.oldClass() >= 0 ? oldToNew[old.classNameId(c.oldClass())] : ids.get(c.className());
+            if (c.oldClass() >= 0) {
+                for (int j = old.firstEdge(c.oldClass()), end = old.endEdge(c.oldClass()); j < end; ++j, ++i) {
+                    int e = old.byClass.get(j);
+                    targets[i] = oldToNew[old.targets.get(e)];
+                    kinds[i] = old.kinds.get(e);
+                    sources[i] = source;
+                    methods[i] = oldToNew[old.methods.get(e)];
+                    bcis[i] = old.bcis.get(e);
+                }
+            } else {
+                for (var edge : c.edges()) {
+                    targets[i] = ids.get(edge.target());
+                    kinds[i] = edge.kind().ordinal();
+                    sources[i] = source;
+                    methods[i] = ids.get(edge.method());
+                    bcis[i] = edge.bci();
+                    ++i;
+                }
+            }
+            classIds[row] = source;
+            hashes[row] = c.hash();
+            classEdgeCounts[row++] = i - start;
+        }
+
+        var order = ColumnSort.order(targets, kinds, sources, methods, bcis);
+        var sortedSources = new int[n];
+        for (int p = 0; p < n; ++p)
+            sortedSources[p] = sources[order[p]];
+        var byClass = ColumnSort.order(sortedSources);
+        var classOrder = ColumnSort.order(classIds);
+
+        // Readers may have the old index mapped, so the new one is moved into place rather than overwritten
+        var parent = file.toAbsolutePath().getParent();
+        var temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(stringCount);
+                out.writeInt(classIds.length);
+                out.writeInt(n);
+
+                int offset = 0;
+                for (int entry : entries) {
+                    out.writeInt(offset);
+                    offset += entry < 0
+                            ? fresh.get(-1 - entry).length
+                            : old.stringOffsets.get(entry + 1) - old.stringOffsets.get(entry);
+                }
+                out.writeInt(offset);
+
+                int firstEdge = 0;
+                for (int c : classOrder) {
+                    out.writeInt(classIds[c]);
+                    out.writeLong(hashes[c]);
+                    out.writeInt(firstEdge);
+                    firstEdge += classEdgeCounts[c];
+                }
+
+                for (var column : new int[][] { targets, kinds, sources, methods, bcis })
+                    for (int p : order)
+                        out.writeInt(column[p]);
+                for (int p : byClass)
+                    out.writeInt(p);
+
+                var copy = new byte[1 << 16];
+                for (int entry : entries) {
+                    if (entry < 0) {
+                        out.write(fresh.get(-1 - entry));
+                        continue;
+                    }
+                    int start = old.stringOffsets.get(entry);
+                    int length = old.stringOffsets.get(entry + 1) - start;
+                    if (length > copy.length)
+                        copy = new byte[length];
+                    old.blob.get(start, copy, 0, length);
+                    out.write(copy, 0, length);
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return n;
+    }
+
+    public static void main(String... args) throws IOException {
+        if (args.length >= 3 && args[0].equals("update")) {
+            var stats = update(Path.of(args[1]), Arrays.asList(args).subList(2, args.length));
+            System.out.printf("%d classes reused, %d decoded, %d edges\n", stats.reused(), stats.decoded(), stats.edges());
+        } else if (args.length == 3 && args[0].equals("query")) {
+            try (var index = open(Path.of(args[1]))) {
+                var target = args[2];
+                var references = target.endsWith("*")
+                        ? index.referencesWithPrefix(target.substring(0, target.length() - 1))
+                        : index.references(target);
+                for (var ref : references)
+                    System.out.printf("%-6s %s  %s.%s%s @%d\n", ref.kind(), ref.target(),
+                            ref.className(), ref.methodName(), ref.descriptor(), ref.bci());
+            }
+        } else
+            System.err.println("Usage: XrefIndex update <index file> <jar/class/directory/jrt:/>...\n"
+                    + "       XrefIndex query <index file> <class | class.member descriptor | prefix*>");
+    }
+}
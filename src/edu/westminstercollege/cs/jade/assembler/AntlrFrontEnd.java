@@ -0,0 +1,100 @@
+package edu.westminstercollege.cs.jade.assembler;
+
+import static edu.westminstercollege.cs.jade.assembler.Node.*;
+
+import edu.westminstercollege.cs.jade.JvmAssemblyLexer;
+import edu.westminstercollege.cs.jade.JvmAssemblyParser;
+import org.antlr.v4.runtime.*;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.function.Consumer;
+
+/**
+ * Parses with the ANTLR grammar into the AST, through {@link AssemblyParseListener}.
+ *
+ * <p>Input held in memory is parsed in two stages: first with SLL prediction, giving up at the first syntax error,
+ * and only if that fails again from the start with full LL prediction and error recovery, so that every error is
+ * reported. SLL is enough for all valid input to this grammar, so the second stage only runs for input with errors.
+ * Streamed input can't be read twice and is parsed once with LL.</p>
+ *
+ * <p>So that the second stage can start over, batch parsing holds the whole input in a char stream and every token in
+ * a {@link CommonTokenStream} until the parse ends, as it did before parsing went through unbuffered streams; for
+ * large input this is again the largest thing on the heap. Only streaming assembly keeps memory bounded with this
+ * front end, and {@link AssemblyParser} does in both modes.</p>
+ *
+ * <p>The lexer and parser are kept per thread and reused. Their DFA caches are static, so all instances in the
+ * process share what they learn, and {@link Assembler#warmUp} can fill them before the first real assembly.</p>
+ */
+final class AntlrFrontEnd {
+
+    private static final ThreadLocal<JvmAssemblyLexer> lexers = ThreadLocal.withInitial(() -> new JvmAssemblyLexer(null));
+    private static final ThreadLocal<JvmAssemblyParser> parsers = ThreadLocal.withInitial(() -> new JvmAssemblyParser(null));
+
+    private AntlrFrontEnd() {}
+
+    /**
+     * Parses a file, or if {@code directiveHandler} is set, passes it each top-level directive instead of keeping them
+     * in the file. Syntax errors are passed to {@code errors}.
+     */
+    static AsmFile parse(Reader in, Consumer<Diagnostic> errors, Consumer<Directive> directiveHandler)
+            throws IOException {
+        var errorListener = new BaseErrorListener() {
+            @Override
+            public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line,
+                                    int charPositionInLine, String msg, RecognitionException e) {
+                errors.accept(new Diagnostic(line, msg, Diagnostic.Severity.Error));
+            }
+        };
+
+        var lexer = lexers.get();
+        var parser = parsers.get();
+        lexer.removeErrorListeners();
+        lexer.addErrorListener(errorListener);
+        try {
+            if (directiveHandler != null) {
+                // Nodes only record source positions, so neither the characters nor the tokens need to be kept once
+                // they've been parsed, and the listener prunes the parse tree as it goes
+                lexer.setInputStream(new UnbufferedCharStream(in));
+                lexer.setTokenFactory(new CommonTokenFactory(true));
+                parser.setTokenStream(new UnbufferedTokenStream<>(lexer));
+                return parse(parser, PredictionMode.LL, new DefaultErrorStrategy(), errorListener, errors,
+                        directiveHandler);
+            }
+
+            lexer.setInputStream(CharStreams.fromReader(in));
+            lexer.setTokenFactory(CommonTokenFactory.DEFAULT);
+            parser.setTokenStream(new CommonTokenStream(lexer));
+            try {
+                return parse(parser, PredictionMode.SLL, new BailErrorStrategy(), null, errors, null);
+            } catch (ParseCancellationException ex) {
+                // Tokens already read are kept, so the lexer doesn't report its errors twice
+                parser.reset();
+                return parse(parser, PredictionMode.LL, new DefaultErrorStrategy(), errorListener, errors, null);
+            }
+        } finally {
+            // Don't keep the input alive until this thread's next parse
+            parser.setTokenStream(null);
+            lexer.setInputStream(null);
+        }
+    }
+
+    private static AsmFile parse(JvmAssemblyParser parser, PredictionMode mode, ANTLRErrorStrategy errorStrategy,
+                                 ANTLRErrorListener errorListener, Consumer<Diagnostic> errors,
+                                 Consumer<Directive> directiveHandler) {
+        var listener = new AssemblyParseListener();
+        listener.directiveHandler = directiveHandler;
+        listener.errors = errors;
+        parser.removeParseListeners();
+        parser.addParseListener(listener);
+        parser.removeErrorListeners();
+        if (errorListener != null)
+            parser.addErrorListener(errorListener);
+        parser.setErrorHandler(errorStrategy);
+        parser.getInterpreter().setPredictionMode(mode);
+        parser.assemblyFile();
+        return listener.file;
+    }
+}
@@ -3,23 +3,42 @@ package edu.westminstercollege.cs.jade.assembler;
 import static edu.westminstercollege.cs.jade.assembler.Node.*;
 import static edu.westminstercollege.cs.jade.classfile.instruction.Operand.*;
 
-import edu.westminstercollege.cs.jade.JvmAssemblyLexer;
-import edu.westminstercollege.cs.jade.JvmAssemblyParser;
 import edu.westminstercollege.cs.jade.SyntaxException;
 import edu.westminstercollege.cs.jade.classfile.AccessFlag;
 import edu.westminstercollege.cs.jade.classfile.instruction.Opcode;
 import edu.westminstercollege.cs.jade.classfile.instruction.OperandType;
-import org.antlr.v4.runtime.CharStreams;
-import org.antlr.v4.runtime.CommonTokenStream;
 
 import java.io.IOException;
 import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.function.Consumer;
 
+/**
+ * Assembles one class. An Assembler holds the state of a single assembly, so it can be used only once and only by one
+ * thread at a time; {@link AssemblerService} can be shared and creates one per class.
+ */
 public class Assembler {
 
-    AssemblyParseListener listener = new AssemblyParseListener();
+    /**
+     * How source is parsed. Both produce the same AST and report syntax errors as assembler errors;
+     * {@link AssemblyParser} is faster, particularly to start, and unlike ANTLR outside of streaming assembly, doesn't
+     * hold the whole input in memory.
+     */
+    public enum FrontEnd {
+        HandWritten, Antlr
+    }
+
+    private final FrontEnd frontEnd;
+    private final Consumer<Diagnostic> diagnostics;
+    private boolean used = false;
+    AsmFile file;
     String sourceFile = null;
     String superclass = null;
     List<String> interfaces = new ArrayList<>();
@@ -27,47 +46,231 @@ public class Assembler {
     String className;
     ClassDirective.Type classType;
     List<FieldDirective> fields = new ArrayList<>();
-    List<MethodDirective> methods = new ArrayList<>();
+    List<Resolved.Method> methods = new ArrayList<>();
+
+    // Members are told apart by name and descriptor, as in the JVM, so methods may differ only in return type (as
+    // bridge methods do). Kept apart from the lists above, since streaming assembly drops each method once encoded
+    private Set<Member> fieldMembers = new HashSet<>();
+    private Set<Member> methodMembers = new HashSet<>();
 
     private Integer methodLocals, methodStack;
-    private Set<String> methodLabels;
+    private Map<String, Integer> methodLabels;
+    private List<LabelReference> forwardReferences;
+    private List<Resolved.Instruction> methodInstructions;
+    private int methodCodeLength;
 
     private boolean wide = false;
 
-    private List<Error> errors = new ArrayList<>();
+    private List<Diagnostic> errors = new ArrayList<>();
     private Deque<Node> nodeStack = new LinkedList<>();
 
+    private record Member(String name, String descriptor) {}
+
+    /**
+     * A branch to a label not yet defined, whose offset is filled in once the method's code has been verified.
+     */
+    private record LabelReference(String label, Position position, int instruction) {}
+
+    public Assembler() {
+        this(FrontEnd.HandWritten);
+    }
+
+    public Assembler(FrontEnd frontEnd) {
+        this(frontEnd, Assembler::print);
+    }
+
+    /**
+     * Creates an assembler that passes errors and warnings to {@code diagnostics}, sorted by line, rather than
+     * printing them.
+     */
+    public Assembler(FrontEnd frontEnd, Consumer<Diagnostic> diagnostics) {
+        this.frontEnd = frontEnd;
+        this.diagnostics = diagnostics;
+    }
+
+    private static void print(Diagnostic diagnostic) {
+        System.err.printf("%s on line %d: %s\n",
+                diagnostic.severity() == Diagnostic.Severity.Error ? "Error" : "Warning",
+                diagnostic.line(),
+                diagnostic.message());
+    }
+
+    private static final String WARM_UP_SOURCE = """
+            .source WarmUp.java
+            .class public final WarmUp
+            .super java/lang/Object
+            .implements java/lang/Runnable
+            .field private static count I
+            .method public <init> ()V
+            .code
+                .limit locals 1
+                .limit stack 1
+                aload_0
+                invokespecial java/lang/Object/<init> ()V
+                return
+            .end code
+            .method public run ()V
+            .code
+                .limit locals 2
+                .limit stack 4
+                ldc "warm\\tup"
+                astore_1
+                ldc2_w 1.5
+                pop2
+                ldc 2.5f
+                pop
+                getstatic WarmUp/count I
+                sipush 1000
+                if_icmpge 14
+                getstatic WarmUp/count I
+                iconst_1
+                iadd
+                putstatic WarmUp/count I
+                goto -17
+                return
+            .end code
+            """;
+
+    /**
+     * Assembles a small class, so that the classes a front end needs are loaded and, for ANTLR, its shared DFA
+     * caches are filled before the first real assembly. Optional; call it at startup if first-assembly latency
+     * matters. Returns the class assembled, which is the same for both front ends.
+     */
+    public static ByteBuffer warmUp(FrontEnd frontEnd) {
+        try {
+            return new Assembler(frontEnd).assemble(new StringReader(WARM_UP_SOURCE));
+        } catch (IOException | SyntaxException ex) {
+            throw new RuntimeException("Internal assembler error: warm-up source doesn't assemble", ex);
+        }
+    }
+
+    /**
+     * Assembles a class into a buffer of exactly its size, positioned at the start of the class.
+     */
+    public ByteBuffer assemble(Reader in) throws IOException, SyntaxException {
+        var writer = parseAndVerify(in);
+        var out = ByteBuffer.allocate(writer.size());
+        writer.write(out);
+        return out.flip();
+    }
+
+    /**
+     * Assembles a class into {@code out}, starting at its position.
+     *
+     * @throws java.nio.BufferOverflowException if the class doesn't fit; nothing is written in that case
+     */
     public void assemble(Reader in, ByteBuffer out) throws IOException, SyntaxException {
-        var lexer = new JvmAssemblyLexer(CharStreams.fromReader(in));
-        var parser = new JvmAssemblyParser(new CommonTokenStream(lexer));
-        parser.addParseListener(listener);
-        parser.assemblyFile();
+        parseAndVerify(in).write(out);
+    }
+
+    /**
+     * Assembles a class and writes it to a channel, returning its size.
+     */
+    public long assemble(Reader in, WritableByteChannel out) throws IOException, SyntaxException {
+        return parseAndVerify(in).write(out);
+    }
+
+    private ClassfileWriter parseAndVerify(Reader in) throws IOException, SyntaxException {
+        parse(in, null);
 
         try {
-            verify(listener.file);
+            verify(file);
         } catch (SyntaxException ex) {}
 
-        if (className == null)
-            errors.add(new Error(1, "No .class/.interface/.enum/.annotation/.module directive", Error.Severity.Error));
-
-        errors.sort(Comparator.comparingInt(Error::line));
+        reportErrors();
+        return new ClassfileWriter(this);
+    }
 
-        boolean hasError = false;
-        for (var error : errors) {
-            if (error.severity() == Error.Severity.Error)
-                hasError = true;
+    /**
+     * Assembles a class while it is being parsed, for inputs too large to hold in memory. Each method is verified and
+     * encoded as soon as its directive ends, and then dropped; encoded methods are kept in a temporary file until the
+     * constant pool is complete and the header can be written. Memory use is bounded by the largest method rather
+     * than the size of the input. Returns the size of the class.
+     */
+    public long assembleStreaming(Reader in, WritableByteChannel out) throws IOException, SyntaxException {
+        var writer = new ClassfileWriter(this);
+        var spillFile = Files.createTempFile("jade", ".methods");
+        try (var spill = FileChannel.open(spillFile, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.DELETE_ON_CLOSE)) {
+            Consumer<Directive> directiveHandler = directive -> {
+                try {
+                    verify(directive);
+                } catch (SyntaxException ex) {}
+
+                // Keep verifying after an error, but there's no point encoding any more
+                if (hasErrors())
+                    return;
+                if (directive instanceof MethodDirective md) {
+                    if (!methods.isEmpty() && methods.get(methods.size() - 1).directive() == md) {
+                        var bytes = writer.encode(writer.assembleConstantPool(methods.remove(methods.size() - 1)));
+                        try {
+                            while (bytes.hasRemaining())
+                                spill.write(bytes);
+                        } catch (IOException ex) {
+                            throw new UncheckedIOException(ex);
+                        }
+                    }
+                } else
+                    writer.assembleConstantPool(directive);
+            };
+            try {
+                parse(in, directiveHandler);
+            } catch (UncheckedIOException ex) {
+                throw ex.getCause();
+            }
 
-            System.err.printf("%s on line %d: %s\n",
-                    error.severity() == Error.Severity.Error ? "Error" : "Warning",
-                    error.line(),
-                    error.message());
+            reportErrors();
+            writer.finishConstantPool();
+
+            long size = 0;
+            var header = writer.header();
+            size += header.remaining();
+            while (header.hasRemaining())
+                out.write(header);
+            long methodsSize = spill.size();
+            for (long position = 0; position < methodsSize; )
+                position += spill.transferTo(position, methodsSize - position, out);
+            size += methodsSize;
+            var trailer = writer.trailer();
+            size += trailer.remaining();
+            while (trailer.hasRemaining())
+                out.write(trailer);
+            return size;
         }
+    }
 
-        if (hasError)
-            throw new SyntaxException("Assembly aborted due to errors");
+    /**
+     * Parses into {@link #file}, or if {@code directiveHandler} is set, passes it each top-level directive instead.
+     */
+    private void parse(Reader in, Consumer<Directive> directiveHandler) throws IOException {
+        if (used)
+            throw new IllegalStateException("An Assembler can only be used once");
+        used = true;
+
+        file = switch (frontEnd) {
+            case HandWritten -> new AssemblyParser(in, errors::add, directiveHandler).parse();
+            case Antlr -> AntlrFrontEnd.parse(in, errors::add, directiveHandler);
+        };
+    }
 
-        var writer = new ClassfileWriter(this);
-        writer.write(out);
+    private boolean hasErrors() {
+        for (var error : errors)
+            if (error.severity() == Diagnostic.Severity.Error)
+                return true;
+        return false;
+    }
+
+    private void reportErrors() throws SyntaxException {
+        if (className == null)
+            errors.add(new Diagnostic(1, "No .class/.interface/.enum/.annotation/.module directive", Diagnostic.Severity.Error));
+
+        errors.sort(Comparator.comparingInt(Diagnostic::line));
+
+        for (var error : errors)
+            diagnostics.accept(error);
+
+        if (hasErrors())
+            throw new SyntaxException("Assembly aborted due to errors");
     }
 
     private void verify(Node node) throws SyntaxException {
@@ -106,63 +309,74 @@ public class Assembler {
 
                 case ImplementsDirective id -> {
                     if (interfaces.contains(id.interfaceName()))
-                        warning("Redundant .implements: %s");
+                        warning("Redundant .implements: %s", id.interfaceName());
                     else
                         interfaces.add(id.interfaceName());
                 }
 
                 case FieldDirective fd -> {
-                    var repeatedField = fields.stream()
-                            .filter(fdef -> fdef.name().equals(fd.name()) && fdef.descriptor().equals(fd.descriptor()))
-                            .findAny();
-                    if (repeatedField.isPresent())
+                    if (!fieldMembers.add(new Member(fd.name(), fd.descriptor())))
                         error("Duplicate .field directive: %s %s", fd.name(), fd.descriptor());
                     else
                         fields.add(fd);
                 }
 
                 case MethodDirective md -> {
-                    var repeatedMethod = fields.stream()
-                            .filter(mdef -> mdef.name().equals(md.name())
-                                && paramTypes(mdef.descriptor()).equals(paramTypes(md.descriptor())))
-                            .findAny();
-                    if (repeatedMethod.isPresent())
+                    if (!methodMembers.add(new Member(md.name(), md.descriptor())))
                         error("Duplicate .method directive: %s %s", md.name(), md.descriptor());
                     else {
-                        methods.add(md);
-                        if (md.code().isPresent())
+                        Optional<Resolved.Code> code = Optional.empty();
+                        if (md.code().isPresent()) {
                             verify(md.code().get());
+                            code = Optional.of(new Resolved.Code(
+                                    methodStack == null ? -1 : methodStack,
+                                    methodLocals == null ? -1 : methodLocals,
+                                    methodInstructions, methodCodeLength));
+                        }
+                        methods.add(new Resolved.Method(md, code));
                     }
                 }
 
                 case Code c -> {
                     methodLocals = methodStack = null;
-                    methodLabels = new HashSet<>();
+                    methodLabels = new HashMap<>();
+                    forwardReferences = new ArrayList<>();
+                    methodInstructions = new ArrayList<>();
+                    methodCodeLength = 0;
                     wide = false;
                     for (var line : c.lines())
                         verify(line);
+                    resolveForwardReferences();
                 }
 
                 case LimitLocals ll -> {
                     if (methodLocals != null)
-                        error("Duplicate .limit stack");
+                        error("Duplicate .limit locals");
+                    else if (ll.locals() < 0 || ll.locals() > 0xffff)
+                        error("Value %d out of range: must be between %d and %d", ll.locals(), 0, 0xffff);
                     methodLocals = ll.locals();
                 }
 
                 case LimitStack ls -> {
                     if (methodStack != null)
                         error("Duplicate .limit stack");
+                    else if (ls.stack() < 0 || ls.stack() > 0xffff)
+                        error("Value %d out of range: must be between %d and %d", ls.stack(), 0, 0xffff);
                     methodStack = ls.stack();
                 }
 
                 case Instruction i -> {
-                    if (i.label().isPresent() && methodLabels.contains(i.label().get()))
+                    if (i.label().isPresent() && methodLabels.putIfAbsent(i.label().get(), methodCodeLength) != null)
                         error("Duplicate label: %s", i.label().get());
-                    else if (i.label().isPresent())
-                        methodLabels.add(i.label().get());
 
-                    verifyInstruction(i);
-                    wide = i.opcode().equals(Opcode.WIDE.mnemonic());
+                    int references = forwardReferences.size();
+                    var resolved = verifyInstruction(i);
+                    if (resolved != null) {
+                        methodInstructions.add(resolved);
+                        methodCodeLength += resolved.length();
+                    } else
+                        forwardReferences.subList(references, forwardReferences.size()).clear();
+                    wide = (resolved != null && resolved.opcode() == Opcode.WIDE);
                 }
 
                 default -> throw new RuntimeException("Internal assembler error: unimplemented node: " + node);
@@ -172,21 +386,29 @@ public class Assembler {
         }
     }
 
-    private void verifyInstruction(Instruction instr) throws SyntaxException {
+    /**
+     * Checks an instruction and lowers it, returning null if it has errors.
+     */
+    private Resolved.Instruction verifyInstruction(Instruction instr) throws SyntaxException {
         var maybeOpcode = Opcode.of(instr.opcode());
         if (maybeOpcode.isEmpty()) {
             error("Invalid instruction mnemonic: %s", instr.opcode());
-            return;
+            return null;
         }
 
         var opcode = maybeOpcode.get();
 
         if (wide && !opcode.isWidenable()) {
             error("Instruction %s cannot be widened", instr.opcode());
-            return;
+            return null;
         }
 
         var operandTypes = wide ? opcode.wideOperandTypes() : opcode.operandTypes();
+        if (operandTypes.stream().anyMatch(opType -> opType.bytes() < 0)) {
+            error("Instruction %s is not supported", instr.opcode());
+            return null;
+        }
+
         int expectedTextOperands = 0;
 
         for (var opType : operandTypes) {
@@ -198,22 +420,33 @@ public class Assembler {
 
         if (expectedTextOperands != instr.operands().size()) {
             error("Wrong number of operands to instruction %s", instr.opcode());
-            return;
+            return null;
         }
 
+        int length = 1;
+        List<edu.westminstercollege.cs.jade.classfile.instruction.Operand> operands = new ArrayList<>(operandTypes.size());
         var instrOperandsIt = instr.operands().iterator();
-        var operandTypeIt = operandTypes.iterator();
-        while (operandTypeIt.hasNext())
-            verifyOperand(instrOperandsIt, operandTypeIt.next());
+        for (var operandType : operandTypes) {
+            var operand = verifyOperand(instrOperandsIt, operandType);
+            if (operand == null)
+                return null;
+            if (operandType.bytes() < 0)
+                throw new RuntimeException("Variable-length operands unimplemented");
+            operands.add(operand);
+            length += operandType.bytes();
+        }
+
+        return new Resolved.Instruction(opcode, List.copyOf(operands), methodCodeLength, length);
     }
 
-    private void verifyOperand(Iterator<Operand> operand, OperandType type) throws SyntaxException {
+    private edu.westminstercollege.cs.jade.classfile.instruction.Operand verifyOperand(Iterator<Operand> operand, OperandType type) throws SyntaxException {
         try {
-            if (classfileOperand(operand, type) != null)
-                return;
-        } catch (ClassCastException | NoSuchElementException ex) {
-            error("Invalid operand");
-        }
+            var classfileOperand = classfileOperand(operand, type);
+            if (classfileOperand != null)
+                return classfileOperand;
+        } catch (ClassCastException | NoSuchElementException ex) {}
+        error("Invalid operand");
+        return null;
     }
 
     edu.westminstercollege.cs.jade.classfile.instruction.Operand classfileOperand(Iterator<Operand> operand, OperandType type) {
@@ -281,26 +514,81 @@ public class Assembler {
                 });
             }
 
-            case BranchOffset16 -> new BranchOffset16(intValue(operand.next(), -0x8000, 0x7fff));
+            case BranchOffset16 -> switch (operand.next()) {
+                case Operand.Word label -> new BranchOffset16(labelOffset(label, -0x8000));
+                case Operand op -> new BranchOffset16(intValue(op, -0x8000, 0x7fff));
+            };
 
-            case BranchOffset32 -> new BranchOffset32(intValue(operand.next()));
+            case BranchOffset32 -> switch (operand.next()) {
+                case Operand.Word label -> new BranchOffset32(labelOffset(label, Integer.MIN_VALUE));
+                case Operand op -> new BranchOffset32(intValue(op));
+            };
 
             default -> throw new RuntimeException("Unimplemented operand type: " + type);
         };
     }
 
+    /**
+     * Returns the offset from the instruction being verified to a label defined earlier in the method, or 0 for a
+     * label not yet defined, recording the reference so the offset can be filled in at the end of the method.
+     */
+    private int labelOffset(Operand.Word label, int min) {
+        var target = methodLabels.get(label.text());
+        if (target != null) {
+            if (target - methodCodeLength < min)
+                error("Label %s too far away for a %d-bit branch", label.text(), min == -0x8000 ? 16 : 32);
+            return target - methodCodeLength;
+        }
+        forwardReferences.add(new LabelReference(label.text(), label.position(), methodInstructions.size()));
+        return 0;
+    }
+
+    private void resolveForwardReferences() {
+        for (var reference : forwardReferences) {
+            var target = methodLabels.get(reference.label());
+            if (target == null) {
+                error(reference.position(), "Undefined label: %s", reference.label());
+                continue;
+            }
+
+            var instruction = methodInstructions.get(reference.instruction());
+            int offset = target - instruction.offset();
+            var operands = instruction.operands().stream()
+                    .map(op -> switch (op) {
+                        case BranchOffset16 b -> {
+                            if (offset > 0x7fff)
+                                error(reference.position(), "Label %s too far away for a %d-bit branch", reference.label(), 16);
+                            yield new BranchOffset16(offset);
+                        }
+                        case BranchOffset32 b -> new BranchOffset32(offset);
+                        default -> op;
+                    })
+                    .toList();
+            methodInstructions.set(reference.instruction(), instruction.withOperands(operands));
+        }
+    }
+
+    /**
+     * Returns the value of an int operand, reporting an error if it is out of range. As in Java, hex is a bit pattern,
+     * so 0xffffffff is -1.
+     */
     private int intValue(Operand op, int min, int max) {
-        var opInt = (Operand.Int)op;
-        var text = opInt.text().toLowerCase();
-        int value;
-        if (text.startsWith("0x"))
-            value = Integer.parseInt(text.substring(2), 0x10);
-        else
-            value = Integer.parseInt(text);
-
-        if (value < min || value > max)
-            error("Value %d out of range: must be between %d and %d", opInt.text(), min, max);
-        return value;
+        var text = ((Operand.Int)op).text();
+        long value;
+        try {
+            if (text.toLowerCase().startsWith("0x"))
+                value = Integer.parseUnsignedInt(text.substring(2), 0x10);
+            else
+                value = Long.parseLong(text);
+        } catch (NumberFormatException ex) {
+            value = Long.MAX_VALUE;
+        }
+
+        if (value < min || value > max) {
+            error("Value %s out of range: must be between %d and %d", text, min, max);
+            return 0;
+        }
+        return (int)value;
     }
 
     private int intValue(Operand op) {
@@ -308,30 +596,34 @@ public class Assembler {
     }
 
     private long longValue(Operand op) {
-        var opLong = (Operand.Long)op;
-        var text = opLong.text().toLowerCase();
-        if (text.startsWith("0x"))
-            return Long.parseLong(text.substring(2), 0x10);
-        return Long.parseLong(text);
+        var text = ((Operand.Long)op).text();
+        // Without the L suffix
+        var digits = text.toLowerCase().substring(0, text.length() - 1);
+        try {
+            if (digits.startsWith("0x"))
+                return Long.parseUnsignedLong(digits.substring(2), 0x10);
+            return Long.parseLong(digits);
+        } catch (NumberFormatException ex) {
+            error("Value %s out of range: must be between %d and %d", text, Long.MIN_VALUE, Long.MAX_VALUE);
+            return 0;
+        }
     }
 
     private void error(String messagePattern, Object... args) {
-        var lineNumber = nodeStack.peek().ctx().start.getLine();
-        errors.add(new Error(lineNumber, String.format(messagePattern, args), Error.Severity.Error));
+        error(nodeStack.peek().position(), messagePattern, args);
+    }
+
+    private void error(Position position, String messagePattern, Object... args) {
+        errors.add(new Diagnostic(position.line(), String.format(messagePattern, args), Diagnostic.Severity.Error));
     }
 
     private void warning(String message, Object... args) {
-        var lineNumber = nodeStack.peek().ctx().start.getLine();
-        errors.add(new Error(lineNumber, String.format(message, args), Error.Severity.Warning));
+        var lineNumber = nodeStack.peek().position().line();
+        errors.add(new Diagnostic(lineNumber, String.format(message, args), Diagnostic.Severity.Warning));
     }
 
     private void immediatelyFatalError(String message, Object... args) throws SyntaxException {
         error(message, args);
         throw new SyntaxException();
     }
-
-    private String paramTypes(String methodDescriptor) {
-        int rparenIndex = methodDescriptor.lastIndexOf(')');
-        return methodDescriptor.substring(1, rparenIndex);
-    }
 }
@@ -0,0 +1,163 @@
+package edu.westminstercollege.cs.jade.assembler;
+
+import edu.westminstercollege.cs.jade.SyntaxException;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Assembles classes on behalf of any number of threads. The service holds only its settings; each assembly gets its
+ * own {@link Assembler}, and its errors and warnings are returned as {@link Diagnostic}s rather than printed.
+ */
+public final class AssemblerService {
+
+    /**
+     * The outcome of assembling one source. {@code classfile} is present if assembly succeeded, and {@code className}
+     * if the source declared a class, even if assembly failed.
+     */
+    public record Result(String name, Optional<String> className, Optional<ByteBuffer> classfile,
+                         List<Diagnostic> diagnostics) {
+
+        public boolean succeeded() {
+            return classfile.isPresent();
+        }
+    }
+
+    private final Assembler.FrontEnd frontEnd;
+    private final int parallelism;
+
+    public AssemblerService() {
+        this(Assembler.FrontEnd.HandWritten, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param parallelism how many classes {@link #assembleAll} assembles at once
+     */
+    public AssemblerService(Assembler.FrontEnd frontEnd, int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        this.frontEnd = frontEnd;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Assembles a class; {@code name} identifies the source in the result.
+     */
+    public Result assemble(String name, Reader in) throws IOException {
+        List<Diagnostic> diagnostics = new ArrayList<>();
+        var assembler = new Assembler(frontEnd, diagnostics::add);
+        ByteBuffer classfile = null;
+        try {
+            classfile = assembler.assemble(in);
+        } catch (SyntaxException ex) {
+            // Reported through the diagnostics
+        }
+        return new Result(name, Optional.ofNullable(assembler.className), Optional.ofNullable(classfile),
+                List.copyOf(diagnostics));
+    }
+
+    /**
+     * Assembles a UTF-8 source file. A file that can't be read gives a failed result rather than an exception.
+     */
+    public Result assemble(Path file) {
+        try (var in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return assemble(file.toString(), in);
+        } catch (IOException ex) {
+            return failed(file.toString(), "Can't read file: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Assembles files in parallel. Each result is passed to {@code results} on the calling thread as soon as it is
+     * ready, so in the order the files finish rather than the order they are given. An internal error assembling
+     * one file is reported in its result and doesn't stop the others.
+     */
+    public void assembleAll(Collection<Path> files, Consumer<Result> results) throws InterruptedException {
+        var executor = Executors.newFixedThreadPool(Math.min(parallelism, Math.max(files.size(), 1)));
+        try {
+            var completion = new ExecutorCompletionService<Result>(executor);
+            for (var file : files) {
+                completion.submit(() -> {
+                    try {
+                        return assemble(file);
+                    } catch (RuntimeException ex) {
+                        return failed(file.toString(), "Internal assembler error: " + ex);
+                    }
+                });
+            }
+
+            for (int i = 0; i < files.size(); ++i) {
+                try {
+                    results.accept(completion.take().get());
+                } catch (ExecutionException ex) {
+                    // Only Errors get past the task's own handler
+                    throw new RuntimeException("Internal assembler error: " + ex.getCause(), ex.getCause());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Result failed(String name, String message) {
+        return new Result(name, Optional.empty(), Optional.empty(),
+                List.of(new Diagnostic(0, message, Diagnostic.Severity.Error)));
+    }
+
+    /**
+     * Assembles files in parallel into a directory, where each class is written under its class name.
+     */
+    public static void main(String... args) throws InterruptedException {
+        if (args.length < 2) {
+            System.err.println("Usage: AssemblerService <output directory> <assembly file>...");
+            return;
+        }
+
+        var outputDirectory = Path.of(args[0]);
+        List<Path> files = new ArrayList<>();
+        for (int i = 1; i < args.length; ++i)
+            files.add(Path.of(args[i]));
+
+        int[] failures = { 0 };
+        new AssemblerService().assembleAll(files, result -> {
+            for (var diagnostic : result.diagnostics())
+                System.err.printf("%s:%d: %s: %s\n", result.name(), diagnostic.line(),
+                        diagnostic.severity().toString().toLowerCase(), diagnostic.message());
+            if (!result.succeeded()) {
+                ++failures[0];
+                return;
+            }
+
+            var classFile = outputDirectory.resolve(result.className().orElseThrow() + ".class");
+            try {
+                Files.createDirectories(classFile.getParent());
+                try (var out = FileChannel.open(classFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING)) {
+                    var bytes = result.classfile().orElseThrow().duplicate();
+                    while (bytes.hasRemaining())
+                        out.write(bytes);
+                }
+                System.out.printf("%s -> %s\n", result.name(), classFile);
+            } catch (IOException ex) {
+                System.err.printf("%s: %s\n", classFile, ex.getMessage());
+                ++failures[0];
+            }
+        });
+
+        if (failures[0] > 0) {
+            System.err.printf("%d of %d files failed\n", failures[0], files.size());
+            System.exit(1);
+        }
+    }
+}
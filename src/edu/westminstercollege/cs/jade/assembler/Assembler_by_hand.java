@@ -20,7 +20,7 @@ public class Assembler_by_hand {
     private BufferedReader in;
     private Deque<String> lineBuffer = new LinkedList<>();
     private int lineNumber = 0;
-    private List<Error> errors = new ArrayList<>(), warnings = new ArrayList<>();
+    private List<Diagnostic> errors = new ArrayList<>(), warnings = new ArrayList<>();
     private Set<String> processedDirectives = new HashSet<>();
 
     private String sourceFile;
@@ -278,11 +278,11 @@ public class Assembler_by_hand {
     }
 
     private void error(String messagePattern, Object... args) {
-        errors.add(new Error(lineNumber, String.format(messagePattern, args), Error.Severity.Error));
+        errors.add(new Diagnostic(lineNumber, String.format(messagePattern, args), Diagnostic.Severity.Error));
     }
 
     private void warning(String messagePattern, Object... args) {
-        warnings.add(new Error(lineNumber, String.format(messagePattern, args), Error.Severity.Warning));
+        warnings.add(new Diagnostic(lineNumber, String.format(messagePattern, args), Diagnostic.Severity.Warning));
     }
 
     private void immediatelyFatalError(String messagePattern, Object... args) throws SyntaxException {
@@ -8,15 +8,22 @@ import edu.westminstercollege.cs.jade.JvmAssemblyParserBaseListener;
 import edu.westminstercollege.cs.jade.classfile.AccessFlag;
 import org.antlr.v4.runtime.CharStreams;
 import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.ParserRuleContext;
 import org.antlr.v4.runtime.tree.TerminalNode;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 class AssemblyParseListener extends JvmAssemblyParserBaseListener {
 
     AsmFile file;
+    // If set, each top-level directive is passed here as soon as it is parsed and then dropped, rather than being
+    // kept in the file
+    Consumer<Directive> directiveHandler;
+    // Errors the grammar doesn't catch, such as a .limit too large for an int
+    Consumer<Diagnostic> errors = diagnostic -> {};
     private List<Directive> fileDirectives;
     private Directive directive;
 
@@ -34,7 +41,7 @@ class AssemblyParseListener extends JvmAssemblyParserBaseListener {
 
     @Override
     public void exitAssemblyFile(JvmAssemblyParser.AssemblyFileContext ctx) {
-        file = new AsmFile(ctx, fileDirectives);
+        file = new AsmFile(position(ctx), fileDirectives);
     }
 
     @Override
@@ -44,7 +51,15 @@ class AssemblyParseListener extends JvmAssemblyParserBaseListener {
 
     @Override
     public void exitTopLevelDirective(JvmAssemblyParser.TopLevelDirectiveContext ctx) {
-        fileDirectives.add(directive);
+        // Directives with syntax errors are left out; the errors have been reported
+        if (directive != null) {
+            if (directiveHandler != null)
+                directiveHandler.accept(directive);
+            else
+                fileDirectives.add(directive);
+        }
+        // Nodes don't refer to the parse tree, so there's no need to keep the directive's part of it
+        ctx.getParent().removeLastChild();
     }
 
     @Override
@@ -54,7 +69,9 @@ class AssemblyParseListener extends JvmAssemblyParserBaseListener {
 
     @Override
     public void exitSourceDirective(JvmAssemblyParser.SourceDirectiveContext ctx) {
-        directive = new SourceDirective(ctx, ctx.FILENAME().getText());
+        if (ctx.exception != null)
+            return;
+        directive = new SourceDirective(position(ctx), ctx.FILENAME().getText());
     }
 
     @Override
@@ -64,6 +81,8 @@ class AssemblyParseListener extends JvmAssemblyParserBaseListener {
 
     @Override
     public void exitClassDirective(JvmAssemblyParser.ClassDirectiveContext ctx) {
+        if (ctx.exception != null)
+            return;
         var type = switch (ctx.DIR_CLASS().getText()) {
             case ".class" -> ClassDirective.Type.Class;
             case ".interface" -> ClassDirective.Type.Interface;
@@ -78,7 +97,7 @@ class AssemblyParseListener extends JvmAssemblyParserBaseListener {
                 .map(this::accessFlag)
                 .toList();
 
-        directive = new ClassDirective(ctx, type, flags, ctx.CLASS_ID().getText());
+        directive = new ClassDirective(position(ctx), type, flags, ctx.CLASS_ID().getText());
     }
 
     @Override
@@ -88,7 +107,9 @@ class AssemblyParseListener extends JvmAssemblyParserBaseListener {
 
     @Override
     public void exitSuperDirective(JvmAssemblyParser.SuperDirectiveContext ctx) {
-        directive = new SuperDirective(ctx, ctx.CLASSNAME().getText());
+        if (ctx.exception != null)
+            return;
+        directive = new SuperDirective(position(ctx), ctx.CLASSNAME().getText());
     }
 
     @Override
@@ -98,7 +119,9 @@ class AssemblyParseListener extends JvmAssemblyParserBaseListener {
 
     @Override
     public void exitImplementsDirective(JvmAssemblyParser.ImplementsDirectiveContext ctx) {
-        directive = new ImplementsDirective(ctx, ctx.CLASSNAME().getText());
+        if (ctx.exception != null)
+            return;
+        directive = new ImplementsDirective(position(ctx), ctx.CLASSNAME().getText());
     }
 
     @Override
@@ -108,12 +131,14 @@ class AssemblyParseListener extends JvmAssemblyParserBaseListener {
 
     @Override
     public void exitFieldDirective(JvmAssemblyParser.FieldDirectiveContext ctx) {
+        if (ctx.exception != null)
+            return;
         var flags = ctx.FIELD_FLAG().stream()
                 .map(TerminalNode::getText)
                 .map(this::accessFlag)
                 .toList();
 
-        directive = new FieldDirective(ctx, flags, ctx.FIELD_ID().getText(), ctx.FIELD_DESC().getText());
+        directive = new FieldDirective(position(ctx), flags, ctx.FIELD_ID().getText(), ctx.FIELD_DESC().getText());
     }
 
     @Override
@@ -124,12 +149,14 @@ class AssemblyParseListener extends JvmAssemblyParserBaseListener {
 
     @Override
     public void exitMethodDirective(JvmAssemblyParser.MethodDirectiveContext ctx) {
+        if (ctx.exception != null)
+            return;
         var flags = ctx.METHOD_FLAG().stream()
                 .map(TerminalNode::getText)
                 .map(this::accessFlag)
                 .toList();
 
-        directive = new MethodDirective(ctx, flags, ctx.METHOD_ID().getText(), ctx.METHOD_DESC().getText(),
+        directive = new MethodDirective(position(ctx), flags, ctx.METHOD_ID().getText(), ctx.METHOD_DESC().getText(),
                 Optional.ofNullable(methodCode));
     }
 
@@ -140,7 +167,9 @@ class AssemblyParseListener extends JvmAssemblyParserBaseListener {
 
     @Override
     public void exitMethodCode(JvmAssemblyParser.MethodCodeContext ctx) {
-        methodCode = new Code(ctx, codeLines);
+        if (ctx.exception != null)
+            return;
+        methodCode = new Code(position(ctx), codeLines);
     }
 
     @Override
@@ -150,7 +179,8 @@ class AssemblyParseListener extends JvmAssemblyParserBaseListener {
 
     @Override
     public void exitCodeLine(JvmAssemblyParser.CodeLineContext ctx) {
-        codeLines.add(codeLine);
+        if (codeLine != null)
+            codeLines.add(codeLine);
     }
 
     @Override
@@ -160,7 +190,10 @@ class AssemblyParseListener extends JvmAssemblyParserBaseListener {
 
     @Override
     public void exitLimitLocals(JvmAssemblyParser.LimitLocalsContext ctx) {
-        codeLine = new LimitLocals(ctx, Integer.parseInt(ctx.INT().getText()));
+        if (ctx.exception != null)
+            return;
+        var locals = limit(ctx.INT());
+        codeLine = locals == null ? null : new LimitLocals(position(ctx), locals);
     }
 
     @Override
@@ -170,7 +203,10 @@ class AssemblyParseListener extends JvmAssemblyParserBaseListener {
 
     @Override
     public void exitLimitStack(JvmAssemblyParser.LimitStackContext ctx) {
-        codeLine = new LimitStack(ctx, Integer.parseInt(ctx.INT().getText()));
+        if (ctx.exception != null)
+            return;
+        var stack = limit(ctx.INT());
+        codeLine = stack == null ? null : new LimitStack(position(ctx), stack);
     }
 
     @Override
@@ -180,11 +216,14 @@ class AssemblyParseListener extends JvmAssemblyParserBaseListener {
 
     @Override
     public void exitLabelInstruction(JvmAssemblyParser.LabelInstructionContext ctx) {
+        if (ctx.exception != null || instrOpcode == null)
+            return;
         String maybeLabel = null;
         if (ctx.CODE_WORD() != null)
             maybeLabel = ctx.CODE_WORD().getText();
 
-        codeLine = new Instruction(ctx, Optional.ofNullable(maybeLabel), instrOpcode, instrOperands);
+        codeLine = new Instruction(position(ctx), Optional.ofNullable(maybeLabel), instrOpcode,
+                List.copyOf(instrOperands));
     }
 
     @Override
@@ -195,6 +234,8 @@ class AssemblyParseListener extends JvmAssemblyParserBaseListener {
 
     @Override
     public void exitInstruction(JvmAssemblyParser.InstructionContext ctx) {
+        if (ctx.exception != null)
+            return;
         instrOpcode = ctx.CODE_WORD().getText();
     }
 
@@ -205,25 +246,44 @@ class AssemblyParseListener extends JvmAssemblyParserBaseListener {
 
     @Override
     public void exitOperand(JvmAssemblyParser.OperandContext ctx) {
+        if (ctx.exception != null)
+            return;
         Operand operand = null;
         if (ctx.INT() != null)
-            operand = new Operand.Int(ctx, ctx.INT().getText());
+            operand = new Operand.Int(position(ctx), ctx.INT().getText());
         else if (ctx.LONG() != null)
-            operand = new Operand.Long(ctx, ctx.LONG().getText());
+            operand = new Operand.Long(position(ctx), ctx.LONG().getText());
         else if (ctx.DOUBLE() != null)
-            operand = new Operand.Double(ctx, ctx.DOUBLE().getText());
+            operand = new Operand.Double(position(ctx), ctx.DOUBLE().getText());
         else if (ctx.FLOAT() != null)
-            operand = new Operand.Float(ctx, ctx.FLOAT().getText());
+            operand = new Operand.Float(position(ctx), ctx.FLOAT().getText());
         else if (ctx.CODE_WORD() != null)
-            operand = new Operand.Word(ctx, ctx.CODE_WORD().getText());
+            operand = new Operand.Word(position(ctx), ctx.CODE_WORD().getText());
         else if (ctx.STRING_STRING() != null)
-            operand = new Operand.Str(ctx, ctx.STRING_STRING().getText());
+            operand = new Operand.Str(position(ctx), ctx.STRING_STRING().getText());
         else
             throw new RuntimeException(String.format("Internal assembler error: unknown instruction operand " + ctx.getText()));
 
         instrOperands.add(operand);
     }
 
+    /**
+     * Returns the value of a .limit, or null, reporting an error, if it isn't a decimal int.
+     */
+    private Integer limit(TerminalNode value) {
+        try {
+            return Integer.parseInt(value.getText());
+        } catch (NumberFormatException ex) {
+            errors.accept(new Diagnostic(value.getSymbol().getLine(), "Expected a decimal integer after .limit",
+                    Diagnostic.Severity.Error));
+            return null;
+        }
+    }
+
+    private static Position position(ParserRuleContext ctx) {
+        return new Position(ctx.start.getLine(), ctx.start.getCharPositionInLine());
+    }
+
     private AccessFlag accessFlag(String text) {
         return AccessFlag.valueOf("ACC_" + text.toUpperCase());
     }
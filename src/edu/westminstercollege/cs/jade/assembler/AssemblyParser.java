@@ -0,0 +1,799 @@
+package edu.westminstercollege.cs.jade.assembler;
+
+import static edu.westminstercollege.cs.jade.assembler.Node.*;
+
+import edu.westminstercollege.cs.jade.classfile.AccessFlag;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * A hand-written parser for assembly files, producing the same AST (positions included) as the ANTLR grammar in
+ * JvmAssemblyLexer.g4 and JvmAssemblyParser.g4 with {@link AssemblyParseListener}, in a single pass and without the
+ * ANTLR runtime. There is no separate token stream: the parser scans for whatever kind of token the lexer's mode would
+ * allow at that point. Input is read through a fixed-size window, so only the current token has to be in memory.
+ *
+ * <p>After a syntax error the rest of the line is skipped, rather than repaired as ANTLR would. Blank lines are
+ * allowed anywhere in .code, including ones containing only whitespace, which the grammar rejects.</p>
+ */
+final class AssemblyParser {
+
+    private static final int EOF = -1;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private static final Set<String> CLASS_FLAGS = Set.of("public", "final", "abstract", "synthetic");
+    private static final Set<String> FIELD_FLAGS = Set.of("public", "private", "protected", "static", "final",
+            "volatile", "transient", "synthetic", "enum");
+    private static final Set<String> METHOD_FLAGS = Set.of("public", "private", "protected", "static", "final",
+            "synchronized", "bridge", "varargs", "native", "abstract", "strict", "synthetic");
+
+    private final Reader in; // null if all the input is in the buffer
+    private CharBuffer buffer;
+    private boolean endOfInput;
+    private int mark = -1; // start of the token being scanned, which refilling the buffer must keep
+
+    // Of the next character
+    private int line = 1, column = 0;
+
+    private final Consumer<Diagnostic> errors;
+    // If set, each top-level directive is passed here as soon as it is parsed rather than being kept in the file
+    private final Consumer<Directive> directiveHandler;
+
+    AssemblyParser(Reader in, Consumer<Diagnostic> errors, Consumer<Directive> directiveHandler) {
+        this.in = in;
+        this.buffer = CharBuffer.allocate(BUFFER_SIZE).flip();
+        this.errors = errors;
+        this.directiveHandler = directiveHandler;
+    }
+
+    AssemblyParser(CharBuffer source, Consumer<Diagnostic> errors, Consumer<Directive> directiveHandler) {
+        this.in = null;
+        this.buffer = source.slice();
+        this.errors = errors;
+        this.directiveHandler = directiveHandler;
+    }
+
+    AsmFile parse() throws IOException {
+        List<Directive> directives = new ArrayList<>();
+        skipSpace();
+        var position = position();
+        while (peek() != EOF) {
+            var directive = directive();
+            if (directive != null) {
+                if (directiveHandler != null)
+                    directiveHandler.accept(directive);
+                else
+                    directives.add(directive);
+            }
+            skipSpace();
+        }
+        return new AsmFile(position, directives);
+    }
+
+    private Directive directive() throws IOException {
+        var position = position();
+        if (peek() != '.') {
+            error(position, "Expected a directive");
+            skipLine();
+            return null;
+        }
+
+        mark();
+        next();
+        while (isLetter(peek()))
+            next();
+        var name = text();
+
+        return switch (name) {
+            case ".source" -> sourceDirective(position);
+            case ".class", ".interface", ".enum", ".annotation", ".module" -> classDirective(position, name);
+            case ".super" -> {
+                var className = className(position, ".super");
+                yield className == null ? null : new SuperDirective(position, className);
+            }
+            case ".implements" -> {
+                var className = className(position, ".implements");
+                yield className == null ? null : new ImplementsDirective(position, className);
+            }
+            case ".field" -> fieldDirective(position);
+            case ".method" -> methodDirective(position);
+            case ".code" -> {
+                error(position, ".code outside a .method");
+                code();
+                yield null;
+            }
+            default -> {
+                error(position, "Unknown directive %s", name);
+                skipLine();
+                yield null;
+            }
+        };
+    }
+
+    private SourceDirective sourceDirective(Position position) throws IOException {
+        skipInlineSpace();
+        var fileName = word(AssemblyParser::isFileNameChar);
+        if (fileName.isEmpty()) {
+            error(position(), "Expected a file name after .source");
+            skipLine();
+            return null;
+        }
+        return endOfDirective(".source") ? new SourceDirective(position, fileName) : null;
+    }
+
+    private ClassDirective classDirective(Position position, String name) throws IOException {
+        var type = switch (name) {
+            case ".class" -> ClassDirective.Type.Class;
+            case ".interface" -> ClassDirective.Type.Interface;
+            case ".enum" -> ClassDirective.Type.Enum;
+            case ".annotation" -> ClassDirective.Type.Annotation;
+            case ".module" -> ClassDirective.Type.Module;
+            default -> throw new RuntimeException(String.format("Internal assembler error: unknown class directive %s", name));
+        };
+
+        List<AccessFlag> flags = new ArrayList<>();
+        String className;
+        while (true) {
+            skipInlineSpace();
+            var wordPosition = position();
+            var word = word(AssemblyParser::isClassNameChar);
+            if (CLASS_FLAGS.contains(word))
+                flags.add(accessFlag(word));
+            else if (isClassName(word)) {
+                className = word;
+                break;
+            } else {
+                error(wordPosition, "Expected a class name after %s", name);
+                skipLine();
+                return null;
+            }
+        }
+        return endOfDirective(name) ? new ClassDirective(position, type, flags, className) : null;
+    }
+
+    private String className(Position position, String directive) throws IOException {
+        skipInlineSpace();
+        var wordPosition = position();
+        var className = word(AssemblyParser::isClassNameChar);
+        if (!isClassName(className)) {
+            error(wordPosition, "Expected a class name after %s", directive);
+            skipLine();
+            return null;
+        }
+        return endOfDirective(directive) ? className : null;
+    }
+
+    private FieldDirective fieldDirective(Position position) throws IOException {
+        List<AccessFlag> flags = new ArrayList<>();
+        String name;
+        while (true) {
+            skipInlineSpace();
+            var wordPosition = position();
+            var word = word(AssemblyParser::isIdChar);
+            if (FIELD_FLAGS.contains(word))
+                flags.add(accessFlag(word));
+            else if (!word.isEmpty()) {
+                name = word;
+                break;
+            } else {
+                error(wordPosition, "Expected a field name after .field");
+                skipLine();
+                return null;
+            }
+        }
+
+        skipInlineSpace();
+        var descriptorPosition = position();
+        var descriptor = word(AssemblyParser::isDescriptorChar);
+        if (descriptor.isEmpty()) {
+            error(descriptorPosition, "Expected a descriptor for field %s", name);
+            skipLine();
+            return null;
+        }
+        return endOfDirective(".field") ? new FieldDirective(position, flags, name, descriptor) : null;
+    }
+
+    private MethodDirective methodDirective(Position position) throws IOException {
+        List<AccessFlag> flags = new ArrayList<>();
+        String name;
+        while (true) {
+            skipInlineSpace();
+            var wordPosition = position();
+            var word = word(AssemblyParser::isIdChar);
+            if (METHOD_FLAGS.contains(word))
+                flags.add(accessFlag(word));
+            else if (!word.isEmpty()) {
+                name = word;
+                break;
+            } else {
+                error(wordPosition, "Expected a method name after .method");
+                skipLine();
+                return null;
+            }
+        }
+
+        skipInlineSpace();
+        var descriptorPosition = position();
+        mark();
+        boolean valid = false;
+        if (peek() == '(') {
+            next();
+            while (isDescriptorChar(peek()))
+                next();
+            if (peek() == ')') {
+                next();
+                if (isDescriptorChar(peek())) {
+                    while (isDescriptorChar(peek()))
+                        next();
+                    valid = true;
+                }
+            }
+        }
+        var descriptor = text();
+        if (!valid) {
+            error(descriptorPosition, "Expected a descriptor for method %s", name);
+            skipLine();
+            return null;
+        }
+        if (!endOfDirective(".method"))
+            return null;
+
+        skipSpace();
+        Optional<Code> code = lookingAt(".code") ? Optional.of(code()) : Optional.empty();
+        return new MethodDirective(position, flags, name, descriptor, code);
+    }
+
+    // Checks that nothing but whitespace and comments is left on the line
+    private boolean endOfDirective(String directive) throws IOException {
+        skipInlineSpace();
+        if (isEndOfLine(peek()))
+            return true;
+        error(position(), "Unexpected text after %s directive", directive);
+        skipLine();
+        return false;
+    }
+
+    private Code code() throws IOException {
+        var position = position();
+        skip(".code".length());
+        skipInlineSpace();
+        if (!isEndOfLine(peek())) {
+            error(position(), "Unexpected text after .code");
+            skipLine();
+        }
+
+        List<CodeLine> lines = new ArrayList<>();
+        while (true) {
+            skipSpace();
+            var linePosition = position();
+            int c = peek();
+            if (c == EOF) {
+                error(position, "Missing .end code");
+                break;
+            }
+
+            if (c == '.') {
+                if (lookingAt(".end")) {
+                    skip(".end".length());
+                    if (skipInlineWhitespace() && lookingAt("code")) {
+                        skip("code".length());
+                        break;
+                    }
+                    error(linePosition, "Expected .end code");
+                    skipLine();
+                } else if (lookingAt(".limit")) {
+                    var limit = limit(linePosition);
+                    if (limit != null)
+                        lines.add(limit);
+                } else {
+                    error(linePosition, "Unexpected directive in .code");
+                    skipLine();
+                }
+                continue;
+            }
+
+            var instruction = instruction(linePosition);
+            if (instruction != null)
+                lines.add(instruction);
+        }
+        return new Code(position, lines);
+    }
+
+    private CodeLine limit(Position position) throws IOException {
+        skip(".limit".length());
+        boolean whitespace = skipInlineWhitespace();
+        boolean locals = lookingAt("locals");
+        if (!whitespace || !(locals || lookingAt("stack"))) {
+            error(position, "Expected .limit locals or .limit stack");
+            skipLine();
+            return null;
+        }
+        skip(locals ? "locals".length() : "stack".length());
+
+        skipInlineSpace();
+        var valuePosition = position();
+        var value = number();
+        Integer limit = null;
+        if (value instanceof Operand.Int i) {
+            try {
+                limit = Integer.parseInt(i.text());
+            } catch (NumberFormatException ex) {}
+        }
+        if (limit == null) {
+            error(valuePosition, "Expected a decimal integer after .limit");
+            skipLine();
+            return null;
+        }
+        if (!endOfCodeLine())
+            return null;
+        return locals ? new LimitLocals(position, limit) : new LimitStack(position, limit);
+    }
+
+    private Instruction instruction(Position position) throws IOException {
+        var first = codeWord();
+        if (first.isEmpty()) {
+            error(position, "Expected an instruction");
+            skipLine();
+            return null;
+        }
+
+        Optional<String> label = Optional.empty();
+        var opcode = first;
+        skipInlineSpace();
+        if (peek() == ':') {
+            next();
+            label = Optional.of(first);
+            skipSpace();
+            var opcodePosition = position();
+            opcode = peek() == '.' ? "" : codeWord();
+            if (opcode.isEmpty()) {
+                error(opcodePosition, "Expected an instruction after label %s", first);
+                skipLine();
+                return null;
+            }
+        }
+
+        List<Operand> operands = new ArrayList<>();
+        while (true) {
+            skipInlineSpace();
+            int c = peek();
+            if (isEndOfLine(c))
+                break;
+
+            Operand operand;
+            if (c == '"') {
+                // string() reports what's wrong
+                operand = string();
+                if (operand == null) {
+                    skipLine();
+                    return null;
+                }
+            } else if (isDigit(c) || c == '+' || c == '-' || c == '.')
+                operand = number();
+            else if (isCodeWordStart(c))
+                operand = new Operand.Word(position(), codeWord());
+            else
+                operand = null;
+
+            if (operand == null) {
+                error(position(), "Unexpected character '%c'", (char)c);
+                skipLine();
+                return null;
+            }
+            operands.add(operand);
+        }
+        if (!endOfCodeLine())
+            return null;
+        return new Instruction(position, label, opcode, List.copyOf(operands));
+    }
+
+    // Consumes the newline ending a line of code
+    private boolean endOfCodeLine() throws IOException {
+        skipInlineSpace();
+        int c = peek();
+        if (c == '\r' || c == '\n') {
+            next();
+            return true;
+        }
+        if (c != EOF) {
+            error(position(), "Unexpected text at end of line");
+            skipLine();
+        }
+        // At the end of the input, code() reports the missing .end code
+        return false;
+    }
+
+    private String codeWord() throws IOException {
+        mark();
+        if (isCodeWordStart(peek())) {
+            next();
+            while (true) {
+                int c = peek();
+                if (isCodeWordChar(c))
+                    next();
+                else if (c == '<' && lookingAt("<init>"))
+                    skip("<init>".length());
+                else if (c == '<' && lookingAt("<clinit>"))
+                    skip("<clinit>".length());
+                else
+                    break;
+            }
+        }
+        return text();
+    }
+
+    /**
+     * Scans INT, LONG, DOUBLE or FLOAT, whichever is longest as ANTLR would. Returns null if there's no number here.
+     */
+    private Operand number() throws IOException {
+        var position = position();
+        mark();
+        int c = peek();
+        boolean signed = c == '+' || c == '-';
+        if (signed)
+            next();
+
+        if (!signed && peek() == '0' && (peek(1) == 'x' || peek(1) == 'X') && isHexDigit(peek(2))) {
+            skip(2);
+            while (isHexDigit(peek()))
+                next();
+            return integer(position);
+        }
+
+        int digits = digits();
+        boolean point = false, exponent = false;
+        if (peek() == '.' && (digits > 0 || isDigit(peek(1)))) {
+            next();
+            digits();
+            point = true;
+        }
+        if (digits > 0 && (peek() == 'e' || peek() == 'E')) {
+            int sign = peek(1) == '+' || peek(1) == '-' ? 1 : 0;
+            if (isDigit(peek(1 + sign))) {
+                skip(1 + sign);
+                digits();
+                exponent = true;
+            }
+        }
+
+        if (point || exponent) {
+            if (peek() == 'f' || peek() == 'F') {
+                next();
+                return new Operand.Float(position, text());
+            }
+            return new Operand.Double(position, text());
+        }
+        if (digits == 0) {
+            mark = -1;
+            return null;
+        }
+        return integer(position);
+    }
+
+    private Operand integer(Position position) throws IOException {
+        if (peek() == 'l' || peek() == 'L') {
+            next();
+            return new Operand.Long(position, text());
+        }
+        return new Operand.Int(position, text());
+    }
+
+    private int digits() throws IOException {
+        int count = 0;
+        while (isDigit(peek())) {
+            next();
+            ++count;
+        }
+        return count;
+    }
+
+    /**
+     * Scans a string literal, keeping its quotes and escapes as they are in the source. Returns null if it's not
+     * terminated or has an invalid escape.
+     */
+    private Operand string() throws IOException {
+        var position = position();
+        mark();
+        next();
+        while (true) {
+            int c = peek();
+            if (c == '"') {
+                next();
+                return new Operand.Str(position, text());
+            }
+            if (c == EOF || c == '\r' || c == '\n' || c == '\t') {
+                mark = -1;
+                error(position, "Unterminated string");
+                return null;
+            }
+            next();
+            if (c != '\\')
+                continue;
+
+            c = peek();
+            if ("bstnfr\"'\\".indexOf(c) >= 0)
+                next();
+            else if (c == 'u' && isHexDigit(peek(1)) && isHexDigit(peek(2)) && isHexDigit(peek(3)) && isHexDigit(peek(4)))
+                skip(5);
+            else if (c >= '0' && c <= '7') {
+                next();
+                if (peek() >= '0' && peek() <= '7') {
+                    next();
+                    if (c <= '3' && peek() >= '0' && peek() <= '7')
+                        next();
+                }
+            } else {
+                mark = -1;
+                error(position(), "Invalid escape in string");
+                return null;
+            }
+        }
+    }
+
+    private void error(Position position, String format, Object... args) {
+        errors.accept(new Diagnostic(position.line(), String.format(format, args), Diagnostic.Severity.Error));
+    }
+
+    private static AccessFlag accessFlag(String text) {
+        return AccessFlag.valueOf("ACC_" + text.toUpperCase());
+    }
+
+    // ---- Characters ----
+
+    private Position position() {
+        return new Position(line, column);
+    }
+
+    private int peek() throws IOException {
+        if (!buffer.hasRemaining() && !fill(1))
+            return EOF;
+        return buffer.get(buffer.position());
+    }
+
+    private int peek(int ahead) throws IOException {
+        if (buffer.remaining() <= ahead && !fill(ahead + 1))
+            return EOF;
+        return buffer.get(buffer.position() + ahead);
+    }
+
+    private void next() throws IOException {
+        if (peek() == '\n') {
+            ++line;
+            column = 0;
+        } else
+            ++column;
+        buffer.position(buffer.position() + 1);
+    }
+
+    private void skip(int count) throws IOException {
+        for (int i = 0; i < count; ++i)
+            next();
+    }
+
+    private boolean lookingAt(String s) throws IOException {
+        for (int i = 0; i < s.length(); ++i)
+            if (peek(i) != s.charAt(i))
+                return false;
+        return true;
+    }
+
+    private void mark() {
+        mark = buffer.position();
+    }
+
+    // Returns the text from the mark to here
+    private String text() {
+        int end = buffer.position();
+        var text = buffer.hasArray()
+                ? new String(buffer.array(), buffer.arrayOffset() + mark, end - mark)
+                : buffer.duplicate().position(mark).limit(end).toString();
+        mark = -1;
+        return text;
+    }
+
+    /**
+     * Makes at least {@code count} characters available after the current position, returning false if the input
+     * ends first. Everything from the mark (or the current position) on is moved to the start of the buffer, which
+     * grows only if a single token doesn't fit in it.
+     */
+    private boolean fill(int count) throws IOException {
+        if (in == null || endOfInput)
+            return false;
+        while (buffer.remaining() < count) {
+            int keep = mark >= 0 ? mark : buffer.position();
+            int position = buffer.position() - keep;
+            buffer.position(keep).compact();
+            if (!buffer.hasRemaining())
+                buffer = CharBuffer.allocate(buffer.capacity() * 2).put(buffer.flip());
+
+            int read = in.read(buffer);
+            buffer.flip().position(position);
+            if (mark >= 0)
+                mark = 0;
+            if (read < 0) {
+                endOfInput = true;
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String word(CharPredicate predicate) throws IOException {
+        mark();
+        while (predicate.test(peek()))
+            next();
+        return text();
+    }
+
+    private interface CharPredicate {
+        boolean test(int c);
+    }
+
+    // Whitespace, newlines and comments between directives
+    private void skipSpace() throws IOException {
+        while (true) {
+            int c = peek();
+            if (c == ' ' || c == '\t' || c == '\r' || c == '\n')
+                next();
+            else if (c == ';')
+                skipComment();
+            else
+                return;
+        }
+    }
+
+    // Spaces, tabs and a comment, up to the end of the line
+    private void skipInlineSpace() throws IOException {
+        skipInlineWhitespace();
+        if (peek() == ';')
+            skipComment();
+    }
+
+    // Returns whether there was any
+    private boolean skipInlineWhitespace() throws IOException {
+        boolean skipped = false;
+        while (peek() == ' ' || peek() == '\t') {
+            next();
+            skipped = true;
+        }
+        return skipped;
+    }
+
+    private void skipComment() throws IOException {
+        while (peek() != '\n' && peek() != EOF)
+            next();
+    }
+
+    // Skips past the next newline, for recovering from an error
+    private void skipLine() throws IOException {
+        mark = -1;
+        int c;
+        do {
+            c = peek();
+            if (c != EOF)
+                next();
+        } while (c != '\n' && c != EOF);
+    }
+
+    private static boolean isEndOfLine(int c) {
+        return c == EOF || c == '\r' || c == '\n';
+    }
+
+    private static boolean isWhitespace(int c) {
+        return c == ' ' || c == '\t' || c == '\r' || c == '\n';
+    }
+
+    private static boolean isLetter(int c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isDigit(int c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isHexDigit(int c) {
+        return isDigit(c) || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+    }
+
+    private static boolean isFileNameChar(int c) {
+        return c != EOF && !isWhitespace(c);
+    }
+
+    // ID in the grammar
+    private static boolean isIdChar(int c) {
+        return isClassNameChar(c) && c != '/';
+    }
+
+    // ID or '/'
+    private static boolean isClassNameChar(int c) {
+        return c != EOF && !isWhitespace(c) && c != '.' && c != ';' && c != '[' && c != '(' && c != ')';
+    }
+
+    // (ID '/')* ID
+    private static boolean isClassName(String s) {
+        return !s.isEmpty() && !s.startsWith("/") && !s.endsWith("/") && !s.contains("//");
+    }
+
+    // DESC in the grammar
+    private static boolean isDescriptorChar(int c) {
+        return c != EOF && !isWhitespace(c) && c != '.' && c != '(' && c != ')';
+    }
+
+    private static boolean isCodeWordStart(int c) {
+        return isLetter(c) || c == '_' || c == '$' || c == '/' || c == '(' || c == ')' || c == '[';
+    }
+
+    private static boolean isCodeWordChar(int c) {
+        return isCodeWordStart(c) || isDigit(c) || c == ';';
+    }
+
+    /**
+     * Checks that this parser and the ANTLR front end produce the same AST for each file given.
+     */
+    public static void main(String... args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: AssemblyParser <assembly file>...");
+            return;
+        }
+
+        int failures = 0;
+        for (var file : args) {
+            List<Diagnostic> errors = new ArrayList<>();
+            AsmFile expected, actual;
+            try (var in = new FileReader(file)) {
+                expected = AntlrFrontEnd.parse(in, errors::add, null);
+            }
+            try (var in = new FileReader(file)) {
+                actual = new AssemblyParser(in, errors::add, null).parse();
+            }
+
+            var difference = difference(expected, actual);
+            for (var error : errors)
+                System.out.printf("%s:%d: %s\n", file, error.line(), error.message());
+            if (difference == null && errors.isEmpty())
+                System.out.printf("%s: OK (%d directives)\n", file, actual.directives().size());
+            else {
+                if (difference != null)
+                    System.out.printf("%s: %s\n", file, difference);
+                ++failures;
+            }
+        }
+        if (failures > 0) {
+            System.out.printf("%d of %d files differ\n", failures, args.length);
+            System.exit(1);
+        }
+    }
+
+    // Describes the first node that differs, or returns null if the trees are equal
+    private static String difference(AsmFile expected, AsmFile actual) {
+        if (expected.equals(actual))
+            return null;
+        var expectedDirectives = expected.directives();
+        var actualDirectives = actual.directives();
+        for (int i = 0; i < Math.min(expectedDirectives.size(), actualDirectives.size()); ++i) {
+            var e = expectedDirectives.get(i);
+            var a = actualDirectives.get(i);
+            if (e.equals(a))
+                continue;
+            if (e instanceof MethodDirective em && a instanceof MethodDirective am
+                    && em.code().isPresent() && am.code().isPresent()) {
+                var expectedLines = em.code().get().lines();
+                var actualLines = am.code().get().lines();
+                for (int j = 0; j < Math.min(expectedLines.size(), actualLines.size()); ++j)
+                    if (!expectedLines.get(j).equals(actualLines.get(j)))
+                        return String.format("expected %s but got %s", expectedLines.get(j), actualLines.get(j));
+            }
+            return String.format("expected %s but got %s", e, a);
+        }
+        if (expectedDirectives.size() != actualDirectives.size())
+            return String.format("expected %d directives but got %d", expectedDirectives.size(), actualDirectives.size());
+        return String.format("expected %s but got %s", expected.position(), actual.position());
+    }
+}
@@ -5,40 +5,300 @@ import static edu.westminstercollege.cs.jade.assembler.Node.*;
 import edu.westminstercollege.cs.jade.classfile.AccessFlag;
 import edu.westminstercollege.cs.jade.classfile.Constant;
 import edu.westminstercollege.cs.jade.classfile.ConstantPool;
-import edu.westminstercollege.cs.jade.classfile.instruction.Opcode;
 import edu.westminstercollege.cs.jade.classfile.instruction.Operand;
-import edu.westminstercollege.cs.jade.classfile.instruction.OperandType;
 
 import java.io.IOException;
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
-import java.util.function.Function;
-
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Writes the class an {@link Assembler} has verified. The size of each part of the class is computed before anything
+ * is written, so the class can be written into an exactly sized buffer, or to a channel as a header buffer and one
+ * buffer per method.
+ *
+ * <p>Methods are prepared in parallel when there are enough of them and more than one core: each method's constants
+ * are collected into a pool of its own and its code is encoded on any thread. Only merging those pools into the
+ * class's pool is sequential, in source order, so the pool and the class come out byte for byte as if everything had
+ * been added in order.</p>
+ *
+ * <p>Directives can also be added one at a time as they are parsed, encoding each method as soon as it is added (see
+ * {@link Assembler#assembleStreaming}). The constant pool only grows, so the indices in methods encoded early stay
+ * valid, and the header and pool are written last.</p>
+ */
 class ClassfileWriter {
 
     private Assembler a;
+    private ConstantPoolBuilder constants = new ConstantPoolBuilder();
     private ConstantPool cp;
-
+    private byte[][] utf8; // encoded Utf8 constants, by pool index
+    private int constantPoolSize;
 
     private int thisClassIndex = -1;
     private int superClassIndex = 0;
     private int sourceFileIndex = -1;
     private List<Integer> interfaceIndices = new ArrayList<>();
+    private List<ByteBuffer> encodedMethods;
+    private int methodCount = 0;
+
+    // Classes with fewer methods than this, or without more than one core to use, are prepared sequentially, since
+    // the per-method pools cost more than they save
+    private static final int PARALLEL_METHODS = 64;
+
+    /**
+     * A method's constants in a pool of its own, and the index there of each constant operand in its code, in order
+     * (-1 for other operands).
+     */
+    private record LocalConstants(ConstantPoolBuilder pool, int[] operandIndices) {}
 
     ClassfileWriter(Assembler assembler) throws IOException {
         this.a = assembler;
     }
 
-    void write(ByteBuffer out) throws IOException {
-        if (cp == null)
-            cp = assembleConstantPool();
+    /**
+     * Returns the size of the class file in bytes.
+     */
+    int size() {
+        prepare();
+        int size = headerSize() + 2; // attribute count
+        for (var method : encodedMethods)
+            size += method.remaining();
+        return size;
+    }
+
+    void write(ByteBuffer out) {
+        int size = size();
+        if (out.remaining() < size)
+            throw new BufferOverflowException();
 
         out.order(ByteOrder.BIG_ENDIAN);
+        writeHeader(out);
+        for (var method : encodedMethods)
+            out.put(method.duplicate());
+        out.putShort((short)0); // attribute count
+    }
+
+    /**
+     * Writes the class to a channel, as a gathering write if the channel supports it, and returns the number of
+     * bytes written.
+     */
+    long write(WritableByteChannel out) throws IOException {
+        prepare();
+        var buffers = new ByteBuffer[encodedMethods.size() + 2];
+        buffers[0] = header();
+        for (int i = 0; i < encodedMethods.size(); ++i)
+            buffers[i + 1] = encodedMethods.get(i).duplicate();
+        buffers[buffers.length - 1] = trailer();
+
+        long size = 0;
+        for (var buffer : buffers)
+            size += buffer.remaining();
+
+        if (out instanceof GatheringByteChannel gathering) {
+            int first = 0;
+            while (first < buffers.length) {
+                gathering.write(buffers, first, buffers.length - first);
+                while (first < buffers.length && !buffers[first].hasRemaining())
+                    ++first;
+            }
+        } else {
+            for (var buffer : buffers)
+                while (buffer.hasRemaining())
+                    out.write(buffer);
+        }
+        return size;
+    }
+
+    private void prepare() {
+        if (cp != null)
+            return;
+
+        if (a.methods.size() < PARALLEL_METHODS || ForkJoinPool.getCommonPoolParallelism() < 2) {
+            List<Resolved.Method> resolved = new ArrayList<>(a.methods.size());
+            var lowered = a.methods.iterator();
+            for (var directive : a.file.directives()) {
+                if (directive instanceof MethodDirective md) {
+                    var method = lowered.next();
+                    if (method.directive() != md)
+                        throw new RuntimeException("Internal assembler error: methods out of order at " + md.name());
+                    resolved.add(assembleConstantPool(method));
+                } else
+                    assembleConstantPool(directive);
+            }
+            finishConstantPool();
+            encodedMethods = resolved.stream().map(this::encode).toList();
+            return;
+        }
+
+        var methods = a.methods;
+        var locals = IntStream.range(0, methods.size()).parallel()
+                .mapToObj(i -> localConstants(methods.get(i)))
+                .toList();
+
+        var poolIndices = new int[methods.size()][];
+        int m = 0;
+        for (var directive : a.file.directives()) {
+            if (directive instanceof MethodDirective md) {
+                if (m >= methods.size() || methods.get(m).directive() != md)
+                    throw new RuntimeException("Internal assembler error: methods out of order at " + md.name());
+                poolIndices[m] = constants.addAll(locals.get(m).pool());
+                ++methodCount;
+                ++m;
+            } else
+                assembleConstantPool(directive);
+        }
+        finishConstantPool();
+
+        // The pool is only read from here on, so methods can look up constants concurrently
+        encodedMethods = IntStream.range(0, methods.size()).parallel()
+                .mapToObj(i -> encode(resolveConstants(methods.get(i), locals.get(i).operandIndices(), poolIndices[i])))
+                .toList();
+    }
+
+    private static LocalConstants localConstants(Resolved.Method method) {
+        var pool = new ConstantPoolBuilder();
+        var md = method.directive();
+        pool.constant(new Constant.Utf8(md.name()));
+        pool.constant(new Constant.Utf8(md.descriptor()));
+        if (method.code().isEmpty())
+            return new LocalConstants(pool, new int[0]);
+        pool.constant(new Constant.Utf8("Code"));
+
+        var instructions = method.code().get().instructions();
+        int operandCount = 0;
+        for (var instr : instructions)
+            operandCount += instr.operands().size();
+        var operandIndices = new int[operandCount];
+        int k = 0;
+        for (var instr : instructions)
+            for (var operand : instr.operands())
+                operandIndices[k++] = constantIndex(operand, pool);
+        return new LocalConstants(pool, operandIndices);
+    }
+
+    /**
+     * Returns a method with its constant operands replaced by their indices in the class's pool, given their
+     * indices in the method's own pool and where each of those ended up.
+     */
+    private static Resolved.Method resolveConstants(Resolved.Method method, int[] operandIndices, int[] poolIndices) {
+        if (method.code().isEmpty())
+            return method;
+
+        var code = method.code().get();
+        List<Resolved.Instruction> instructions = new ArrayList<>(code.instructions().size());
+        int k = 0;
+        for (var instr : code.instructions()) {
+            var operands = instr.operands();
+            List<Operand> resolved = null;
+            for (int i = 0; i < operands.size(); ++i) {
+                int index = operandIndices[k++];
+                if (index < 0)
+                    continue;
+                if (resolved == null)
+                    resolved = new ArrayList<>(operands);
+                resolved.set(i, constantOperand(operands.get(i), poolIndices[index]));
+            }
+            instructions.add(resolved == null ? instr : instr.withOperands(List.copyOf(resolved)));
+        }
+        return new Resolved.Method(method.directive(), Optional.of(
+                new Resolved.Code(code.maxStack(), code.maxLocals(), instructions, code.length())));
+    }
+
+    /**
+     * Fixes the constant pool once every directive has been added.
+     */
+    void finishConstantPool() {
+        cp = constants.build();
+        var pool = cp.constants();
+        utf8 = new byte[pool.length][];
+        constantPoolSize = 2; // count
+        for (int i = 0; i < pool.length; ++i) {
+            if (pool[i] instanceof Constant.Utf8(String value))
+                utf8[i] = value.getBytes(StandardCharsets.UTF_8);
+            if (pool[i] != null)
+                constantPoolSize += constantSize(pool[i], utf8[i]);
+        }
+    }
+
+    private static int constantSize(Constant constant, byte[] utf8) {
+        return 1 + switch (constant) {
+            case Constant.Utf8 u -> 2 + utf8.length;
+            case Constant.Integer i -> 4;
+            case Constant.Float f -> 4;
+            case Constant.Long l -> 8;
+            case Constant.Double d -> 8;
+            case Constant.Class c -> 2;
+            case Constant.String str -> 2;
+            case Constant.FieldRef fr -> 4;
+            case Constant.MethodRef mr -> 4;
+            case Constant.InterfaceMethodRef imr -> 4;
+            case Constant.NameAndType nat -> 4;
+            case Constant.MethodHandle mh -> 3;
+            case Constant.MethodType mt -> 2;
+            case Constant.Dynamic d -> 4;
+            case Constant.InvokeDynamic id -> 4;
+            case Constant.Module m -> 2;
+            case Constant.Package pkg -> 2;
+        };
+    }
+
+    // Everything up to the methods, including the method count
+    private int headerSize() {
+        return 4 + 2 + 2 // magic and version
+                + constantPoolSize
+                + 2 + 2 + 2 // access flags, this and super class
+                + 2 + 2 * interfaceIndices.size()
+                + 2 + (2 + 2 + 2 + 2) * a.fields.size()
+                + 2;
+    }
+
+    private static int methodSize(Resolved.Method method) {
+        int size = 2 + 2 + 2 + 2;
+        if (method.code().isPresent())
+            size += 2 + 4 + codeAttributeSize(method.code().get());
+        return size;
+    }
+
+    private static int codeAttributeSize(Resolved.Code code) {
+        int exceptionTableLength = 0;
+        return 2 + 2 + 4 + code.length() + 2 + exceptionTableLength * (2 + 2 + 2 + 2) + 2;
+    }
+
+    /**
+     * Returns everything before the methods, once the constant pool is finished.
+     */
+    ByteBuffer header() {
+        var out = ByteBuffer.allocate(headerSize());
+        writeHeader(out);
+        return out.flip();
+    }
+
+    /**
+     * Returns what follows the methods.
+     */
+    ByteBuffer trailer() {
+        return ByteBuffer.allocate(2).putShort((short)0).flip(); // attribute count
+    }
+
+    /**
+     * Returns a method as it appears in the class file; its constants must already have been added.
+     */
+    ByteBuffer encode(Resolved.Method method) {
+        var out = ByteBuffer.allocate(methodSize(method));
+        writeMethod(out, method);
+        return out.flip();
+    }
+
+    private void writeHeader(ByteBuffer out) {
         out.putInt(0xCAFE_BABE); // magic
 
         out.putShort((short)0);     // minor version
@@ -55,25 +315,15 @@ class ClassfileWriter {
         interfaceIndices.forEach(i -> out.putShort((short)(int)i));
 
         writeFields(out, a.fields);
-        writeMethods(out, a.methods);
-
-        out.putShort((short)0); // attribute count
-
+        out.putShort((short)methodCount);
     }
 
-    private ConstantPool assembleConstantPool() {
-        var builder = new ConstantPoolBuilder();
-        assembleConstantPool(a.listener.file, builder);
-        return builder.build();
-    }
-
-    private void assembleConstantPool(Node node, ConstantPoolBuilder builder) {
-        switch (node) {
-            case AsmFile af -> {
-                for (var directive : af.directives())
-                    assembleConstantPool(directive, builder);
-            }
-
+    /**
+     * Adds the constants a directive other than .method needs.
+     */
+    void assembleConstantPool(Directive directive) {
+        var builder = constants;
+        switch (directive) {
             case SourceDirective sd ->
                 sourceFileIndex = builder.constant(new Constant.Utf8(sd.sourceFile()));
                 // TODO: SourceFile attribute
@@ -98,52 +348,65 @@ class ClassfileWriter {
                 builder.constant(new Constant.Utf8(fd.descriptor()));
             }
 
-            case MethodDirective md -> {
-                builder.constant(new Constant.Utf8(md.name()));
-                builder.constant(new Constant.Utf8(md.descriptor()));
-
-                if (md.code().isPresent()) {
-                    builder.constant(new Constant.Utf8("Code"));
-                    assembleConstantPool(md.code().get(), builder);
-                }
-            }
-
-            case Code c -> {
-                boolean wide = false;
-                for (var line : c.lines()) {
-                    if (line instanceof Instruction i) {
-                        var opcode = Opcode.of(i.opcode()).get();
-                        var instrOperandsIt = i.operands().iterator();
-                        var operandTypes = wide ? opcode.wideOperandTypes() : opcode.operandTypes();
-                        var operandTypeIt = operandTypes.iterator();
-
-                        while (operandTypeIt.hasNext()) {
-                            var operandType = operandTypeIt.next();
-                            var classfileOperand = a.classfileOperand(instrOperandsIt, operandType);
+            case MethodDirective md ->
+                throw new RuntimeException("Internal assembler error: method added as a directive: " + md.name());
+        }
+    }
 
-                            assembleConstantPool(operandType, classfileOperand, builder);
-                        }
+    /**
+     * Adds the constants a method needs, and returns it with the constant operands in its code replaced by the
+     * constants' indices.
+     */
+    Resolved.Method assembleConstantPool(Resolved.Method method) {
+        var md = method.directive();
+        constants.constant(new Constant.Utf8(md.name()));
+        constants.constant(new Constant.Utf8(md.descriptor()));
+        ++methodCount;
+
+        if (method.code().isEmpty())
+            return method;
+        constants.constant(new Constant.Utf8("Code"));
+        return new Resolved.Method(md, Optional.of(assembleConstantPool(method.code().get(), constants)));
+    }
 
-                        wide = (opcode == Opcode.WIDE);
-                    }
-                }
+    /**
+     * Adds the constants a method's code refers to, and returns the code with those operands replaced by the
+     * constants' indices.
+     */
+    private Resolved.Code assembleConstantPool(Resolved.Code code, ConstantPoolBuilder builder) {
+        List<Resolved.Instruction> instructions = new ArrayList<>(code.instructions().size());
+        for (var instr : code.instructions()) {
+            var operands = instr.operands();
+            List<Operand> resolved = null;
+            for (int i = 0; i < operands.size(); ++i) {
+                int index = constantIndex(operands.get(i), builder);
+                if (index < 0)
+                    continue;
+                if (resolved == null)
+                    resolved = new ArrayList<>(operands);
+                resolved.set(i, constantOperand(operands.get(i), index));
             }
-
-            default -> {}
+            instructions.add(resolved == null ? instr : instr.withOperands(List.copyOf(resolved)));
         }
+        return new Resolved.Code(code.maxStack(), code.maxLocals(), instructions, code.length());
     }
 
-    private void assembleConstantPool(OperandType operandType, Operand operand, ConstantPoolBuilder builder) {
-        switch (operand) {
+    /**
+     * Adds the constant an operand refers to and returns its index, or returns -1 if the operand isn't a constant.
+     */
+    private static int constantIndex(Operand operand, ConstantPoolBuilder builder) {
+        return switch (operand) {
             case Operand.Imm8.Integer(int i) -> builder.constant(new Constant.Integer(i));
             case Operand.Imm8.Float(float f) -> builder.constant(new Constant.Float(f));
             case Operand.Imm8.String(String s) -> builder.constant(new Constant.String(builder.constant(new Constant.Utf8(s))));
+            case Operand.Imm8.Class(String name) -> builder.constant(new Constant.Class(builder.constant(new Constant.Utf8(name))));
 
             case Operand.Imm16.Integer(int i) -> builder.constant(new Constant.Integer(i));
             case Operand.Imm16.Float(float f) -> builder.constant(new Constant.Float(f));
             case Operand.Imm16.String(String s) -> builder.constant(new Constant.String(builder.constant(new Constant.Utf8(s))));
             case Operand.Imm16.Long(long l) -> builder.constant(new Constant.Long(l));
             case Operand.Imm16.Double(double d) -> builder.constant(new Constant.Double(d));
+            case Operand.Imm16.Class(String name) -> builder.constant(new Constant.Class(builder.constant(new Constant.Utf8(name))));
 
             case Operand.RefType(String s) -> builder.constant(new Constant.Class(builder.constant(new Constant.Utf8(s))));
 
@@ -153,7 +416,7 @@ class ClassfileWriter {
                         builder.constant(new Constant.Utf8(fieldName)),
                         builder.constant(new Constant.Utf8(descriptor))
                 ));
-                builder.constant(new Constant.FieldRef(classIndex, nameAndTypeIndex));
+                yield builder.constant(new Constant.FieldRef(classIndex, nameAndTypeIndex));
             }
 
             case Operand.Method(String className, String methodName, String descriptor) -> {
@@ -162,25 +425,39 @@ class ClassfileWriter {
                         builder.constant(new Constant.Utf8(methodName)),
                         builder.constant(new Constant.Utf8(descriptor))
                 ));
-                builder.constant(new Constant.MethodRef(classIndex, nameAndTypeIndex));
+                yield builder.constant(new Constant.MethodRef(classIndex, nameAndTypeIndex));
             }
 
-            default -> {}
-        }
+            default -> -1;
+        };
+    }
+
+    private static Operand constantOperand(Operand operand, int index) {
+        return operand instanceof Operand.Imm8 ? imm8(index) : new Operand.U16(index);
+    }
+
+    // Problem here — "ldc" instruction should probably switch to "ldc_w" transparently if constant is not in
+    // first 255 entries!
+    private static Operand imm8(int index) {
+        if (index < 0 || index > 255)
+            throw new RuntimeException("Index too large for Imm8");
+        return new Operand.U8(index);
     }
 
     private void writeConstantPool(ByteBuffer out, ConstantPool pool) {
         out.putShort((short)cp.constants().length); // constant pool size
 
-        for (var constant : pool.constants()) {
+        var constants = pool.constants();
+        for (int index = 0; index < constants.length; ++index) {
+            var constant = constants[index];
             if (constant == null)
                 // should only be the case for the index 0 and "back halves" of double/long values
                 continue;
 
             switch (constant) {
-                case Constant.Utf8(String s) -> {
+                case Constant.Utf8 u -> {
                     out.put((byte)1);
-                    byte[] stringBytes = s.getBytes(StandardCharsets.UTF_8);
+                    byte[] stringBytes = utf8[index];
                     out.putShort((short)stringBytes.length);
                     out.put(stringBytes);
                 }
@@ -275,11 +552,11 @@ class ClassfileWriter {
         }
     }
 
-    private short findConstant(Constant c) {
-        for (int i = 0; i < cp.constants().length; ++i)
-            if (c.equals(cp.constants()[i]))
-                return (short)i;
-        throw new RuntimeException("Internal assembler error: constant not found in pool: " + c);
+    private int findConstant(Constant c) {
+        int index = constants.indexOf(c);
+        if (index < 0)
+            throw new RuntimeException("Internal assembler error: constant not found in pool: " + c);
+        return index;
     }
 
     private void writeAccessFlags(ByteBuffer out, Collection<AccessFlag> c) {
@@ -293,61 +570,39 @@ class ClassfileWriter {
         out.putShort((short)fields.size());
         for (var field : fields) {
             writeAccessFlags(out, field.flags());
-            out.putShort(findConstant(new Constant.Utf8(field.name())));
-            out.putShort(findConstant(new Constant.Utf8(field.descriptor())));
+            out.putShort((short)findConstant(new Constant.Utf8(field.name())));
+            out.putShort((short)findConstant(new Constant.Utf8(field.descriptor())));
             // TODO: attributes
             out.putShort((short)0); // attribute count
         }
     }
 
-    private void writeMethods(ByteBuffer out, Collection<MethodDirective> methods) {
-        out.putShort((short)methods.size());
-        for (var method : methods) {
-            writeAccessFlags(out, method.flags());
-            out.putShort(findConstant(new Constant.Utf8(method.name())));
-            out.putShort(findConstant(new Constant.Utf8(method.descriptor())));
-            // TODO: other attributes
-            if (method.code().isPresent()) {
-                out.putShort((short)1); // number of attributes
-                writeCode(out, method.code().get());
-            } else
-                out.putShort((short)0);
-        }
+    private void writeMethod(ByteBuffer out, Resolved.Method method) {
+        var directive = method.directive();
+        writeAccessFlags(out, directive.flags());
+        out.putShort((short)findConstant(new Constant.Utf8(directive.name())));
+        out.putShort((short)findConstant(new Constant.Utf8(directive.descriptor())));
+        // TODO: other attributes
+        if (method.code().isPresent()) {
+            out.putShort((short)1); // number of attributes
+            writeCode(out, method.code().get());
+        } else
+            out.putShort((short)0);
     }
 
-    private void writeCode(ByteBuffer out, Code code) {
-        int codeSize = calculateCodeSize(code);
+    private void writeCode(ByteBuffer out, Resolved.Code code) {
+        int codeSize = code.length();
         int exceptionTableLength = 0;
-        int attributeSize = 2 + 2 + 4 + codeSize + 2 + exceptionTableLength * (2 + 2 + 2 + 2) + 2;
-
-        int maxLocals = -1, maxStack = -1;
-        for (var line : code.lines()) {
-            if (line instanceof LimitLocals ll) {
-                maxLocals = ll.locals();
-                if (maxStack >= 0)
-                    break;
-            } else if (line instanceof LimitStack ls) {
-                maxStack = ls.stack();
-                if (maxLocals >= 0)
-                    break;
-            }
-        }
+        int attributeSize = codeAttributeSize(code);
 
-        out.putShort(findConstant(new Constant.Utf8("Code")));
+        out.putShort((short)findConstant(new Constant.Utf8("Code")));
         out.putInt(attributeSize);
-        out.putShort((short)maxStack);
-        out.putShort((short)maxLocals);
+        out.putShort((short)code.maxStack());
+        out.putShort((short)code.maxLocals());
         out.putInt(codeSize);
 
-        boolean wide = false;
-        for (var line : code.lines()) {
-            if (!(line instanceof Instruction instr))
-                continue;
-
-            writeInstruction(out, instr, wide);
-
-            wide = (Opcode.of(instr.opcode()).get() == Opcode.WIDE);
-        }
+        for (var instr : code.instructions())
+            writeInstruction(out, instr);
 
         out.putShort((short)exceptionTableLength);
 
@@ -358,52 +613,13 @@ class ClassfileWriter {
         // Attributes go here
     }
 
-    private int calculateCodeSize(Code code) {
-        int exceptionTableLength = 0;
-        int size = 0;
-
-        boolean wide = false;
-        for (var line : code.lines()) {
-            if (!(line instanceof Instruction instr))
-                continue;
-            size += instructionLength(instr, wide);
-            wide = (Opcode.of(instr.opcode()).get() == Opcode.WIDE);
-        }
-
-        return size;
-    }
-
-    private int instructionLength(Instruction i, boolean wide) {
-        var opcode = Opcode.of(i.opcode()).get();
-        var operands = wide ? opcode.wideOperandTypes() : opcode.operandTypes();
-        var stats = operands.stream().mapToInt(OperandType::bytes).summaryStatistics();
-        if (operands.size() > 0 && stats.getMax() < 0)
-            throw new RuntimeException("Variable-length operands unimplemented");
-        return 1 + (int)stats.getSum();
-    }
-
-    private void writeInstruction(ByteBuffer out, Instruction instr, boolean wide) {
-        var opcode = Opcode.of(instr.opcode()).get();
-        out.put((byte)opcode.value());
-
-        var instrOperandsIt = instr.operands().iterator();
-        var operandTypes = wide ? opcode.wideOperandTypes() : opcode.operandTypes();
-        var operandTypeIt = operandTypes.iterator();
-
-        while (operandTypeIt.hasNext()) {
-            var operandType = operandTypeIt.next();
-            var classfileOperand = a.classfileOperand(instrOperandsIt, operandType);
-
-            writeOperand(out, classfileOperand);
-        }
+    private void writeInstruction(ByteBuffer out, Resolved.Instruction instr) {
+        out.put((byte)instr.opcode().value());
+        for (var operand : instr.operands())
+            writeOperand(out, operand);
     }
 
     private void writeOperand(ByteBuffer out, Operand operand) {
-        Function<Short, Byte> byteOrThrow = (Short n) -> {
-            if (n < 0 || n > 255) throw new RuntimeException("Index too large for Imm8");
-            return (byte)(int)n;
-        };
-
         switch (operand) {
             case Operand.U8(int n) -> out.put((byte)n);
             case Operand.U16(int n) -> out.putShort((short)n);
@@ -411,36 +627,11 @@ class ClassfileWriter {
             case Operand.S16(int n) -> out.putShort((short)n);
             case Operand.S32(int n) -> out.putInt(n);
 
-            // Problem here — "ldc" instruction should probably switch to "ldc_w" transparently if constant is not in
-            // first 255 entries!
-            case Operand.Imm8.Integer(int n) -> out.put(byteOrThrow.apply(findConstant(new Constant.Integer(n))));
-            case Operand.Imm8.Float(float f) -> out.put(byteOrThrow.apply(findConstant(new Constant.Float(f))));
-            case Operand.Imm8.String(String s) -> out.put(byteOrThrow.apply(findConstant(new Constant.String(findConstant(new Constant.Utf8(s))))));
-
-            case Operand.Imm16.Integer(int n) -> out.putShort(findConstant(new Constant.Integer(n)));
-            case Operand.Imm16.Float(float f) -> out.putShort(findConstant(new Constant.Float(f)));
-            case Operand.Imm16.String(String s) -> out.putShort(findConstant(new Constant.String(findConstant(new Constant.Utf8(s)))));
-            case Operand.Imm16.Long(long l) -> out.putShort(findConstant(new Constant.Long(l)));
-            case Operand.Imm16.Double(double d) -> out.putShort(findConstant(new Constant.Double(d)));
-
-            case Operand.RefType(String text) -> out.putShort(findConstant(new Constant.Class(findConstant(new Constant.Utf8(text)))));
-
-            case Operand.Field(String className, String fieldName, String descriptor) ->
-                out.putShort(findConstant(new Constant.FieldRef(
-                        findConstant(new Constant.Class(findConstant(new Constant.Utf8(className)))),
-                        findConstant(new Constant.NameAndType(
-                                findConstant(new Constant.Utf8(fieldName)),
-                                findConstant(new Constant.Utf8(descriptor))
-                        ))
-                )));
-            case Operand.Method(String className, String methodName, String descriptor) ->
-                    out.putShort(findConstant(new Constant.MethodRef(
-                            findConstant(new Constant.Class(findConstant(new Constant.Utf8(className)))),
-                            findConstant(new Constant.NameAndType(
-                                    findConstant(new Constant.Utf8(methodName)),
-                                    findConstant(new Constant.Utf8(descriptor))
-                            ))
-                    )));
+            case Operand.Imm8 imm -> throw new RuntimeException("Internal assembler error: unresolved constant: " + imm);
+            case Operand.Imm16 imm -> throw new RuntimeException("Internal assembler error: unresolved constant: " + imm);
+            case Operand.RefType rt -> throw new RuntimeException("Internal assembler error: unresolved constant: " + rt);
+            case Operand.Field f -> throw new RuntimeException("Internal assembler error: unresolved constant: " + f);
+            case Operand.Method m -> throw new RuntimeException("Internal assembler error: unresolved constant: " + m);
 
             case Operand.DynamicCallSite dcs -> throw new RuntimeException("Dynamic call sites unsupported");
 
@@ -6,28 +6,80 @@ import edu.westminstercollege.cs.jade.classfile.ConstantPool;
 import java.util.HashMap;
 import java.util.Map;
 
+/**
+ * Assigns constant pool indices as constants are added. The value → index map is also what {@link ClassfileWriter}
+ * looks constants up in, so every lookup while writing is a hash lookup.
+ */
 class ConstantPoolBuilder {
 
     private Map<Constant, Integer> constants = new HashMap<>();
-
-    {
-        constants.put(null, 0);
-    }
+    private int size = 1; // index 0 is unused
 
     public int constant(Constant c) {
-        Integer index = constants.getOrDefault(c, null);
+        Integer index = constants.get(c);
         if (index == null) {
-            index = constants.size();
+            index = size;
             constants.put(c, index);
-            if (c instanceof Constant.Long || c instanceof Constant.Double)
-                constants.put(null, index + 1);
+            // Longs and doubles take up two entries
+            size += (c instanceof Constant.Long || c instanceof Constant.Double) ? 2 : 1;
         }
 
         return index;
     }
 
+    /**
+     * Returns the index of a constant already added, or -1 if it hasn't been.
+     */
+    public int indexOf(Constant c) {
+        return constants.getOrDefault(c, -1);
+    }
+
+    /**
+     * Adds another builder's constants in the order they were added to it, so the result is the same as if they had
+     * been added here directly. Returns the index here of each of its indices.
+     */
+    public int[] addAll(ConstantPoolBuilder other) {
+        var pool = other.build().constants();
+        var indices = new int[pool.length];
+        // A constant's references are always added before it, so they're already mapped
+        for (int i = 1; i < pool.length; ++i)
+            if (pool[i] != null)
+                indices[i] = constant(remap(pool[i], indices));
+        return indices;
+    }
+
+    private static Constant remap(Constant c, int[] indices) {
+        return switch (c) {
+            case Constant.Class(int nameIndex) -> new Constant.Class(indices[nameIndex]);
+            case Constant.String(int stringIndex) -> new Constant.String(indices[stringIndex]);
+            case Constant.FieldRef(int classIndex, int nameAndTypeIndex) ->
+                    new Constant.FieldRef(indices[classIndex], indices[nameAndTypeIndex]);
+            case Constant.MethodRef(int classIndex, int nameAndTypeIndex) ->
+                    new Constant.MethodRef(indices[classIndex], indices[nameAndTypeIndex]);
+            case Constant.InterfaceMethodRef(int classIndex, int nameAndTypeIndex) ->
+                    new Constant.InterfaceMethodRef(indices[classIndex], indices[nameAndTypeIndex]);
+            case Constant.NameAndType(int nameIndex, int descriptorIndex) ->
+                    new Constant.NameAndType(indices[nameIndex], indices[descriptorIndex]);
+            case Constant.MethodHandle(int referenceKind, int referenceIndex) ->
+                    new Constant.MethodHandle(referenceKind, indices[referenceIndex]);
+            case Constant.MethodType(int descriptorIndex) -> new Constant.MethodType(indices[descriptorIndex]);
+            // Bootstrap method indices refer to the BootstrapMethods attribute, not the pool
+            case Constant.Dynamic(int bootstrapMethodAttrIndex, int nameAndTypeIndex) ->
+                    new Constant.Dynamic(bootstrapMethodAttrIndex, indices[nameAndTypeIndex]);
+            case Constant.InvokeDynamic(int bootstrapMethodAttrIndex, int nameAndTypeIndex) ->
+                    new Constant.InvokeDynamic(bootstrapMethodAttrIndex, indices[nameAndTypeIndex]);
+            case Constant.Module(int nameIndex) -> new Constant.Module(indices[nameIndex]);
+            case Constant.Package(int nameIndex) -> new Constant.Package(indices[nameIndex]);
+            case Constant.Utf8 u -> c;
+            case Constant.Integer i -> c;
+            case Constant.Float f -> c;
+            case Constant.Long l -> c;
+            case Constant.Double d -> c;
+        };
+    }
+
     public ConstantPool build() {
-        Constant[] constantArray = new Constant[constants.size()];
+        Constant[] constantArray = new Constant[size];
         for (var entry : constants.entrySet())
             constantArray[entry.getValue()] = entry.getKey();
 
@@ -0,0 +1,12 @@
+package edu.westminstercollege.cs.jade.assembler;
+
+/**
+ * An error or warning about the source being assembled. Lines start at 1; line 0 means the problem isn't with any
+ * particular line, such as a file that couldn't be read.
+ */
+public record Diagnostic(int line, String message, Severity severity) {
+
+    public enum Severity {
+        Error, Warning
+    }
+}
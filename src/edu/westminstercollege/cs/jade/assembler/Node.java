@@ -1,49 +1,53 @@
 package edu.westminstercollege.cs.jade.assembler;
 
 import edu.westminstercollege.cs.jade.classfile.AccessFlag;
-import org.antlr.v4.runtime.ParserRuleContext;
 
 import java.util.List;
 import java.util.Optional;
 
 public sealed interface Node {
 
-    ParserRuleContext ctx();
+    /**
+     * Where a node starts in the source: a 1-based line and a 0-based column, as ANTLR counts them.
+     */
+    record Position(int line, int column) {}
 
-    record AsmFile(ParserRuleContext ctx, List<Directive> directives) implements Node {}
+    Position position();
+
+    record AsmFile(Position position, List<Directive> directives) implements Node {}
 
     sealed interface Directive extends Node { }
 
-    record SourceDirective(ParserRuleContext ctx, String sourceFile) implements Directive {}
-    record ClassDirective(ParserRuleContext ctx, Type type, List<AccessFlag> flags, String name) implements Directive {
+    record SourceDirective(Position position, String sourceFile) implements Directive {}
+    record ClassDirective(Position position, Type type, List<AccessFlag> flags, String name) implements Directive {
         enum Type {
             Class, Interface, Enum, Annotation, Module
         }
     }
 
-    record SuperDirective(ParserRuleContext ctx, String superclassName) implements Directive {}
+    record SuperDirective(Position position, String superclassName) implements Directive {}
 
-    record ImplementsDirective(ParserRuleContext ctx, String interfaceName) implements Directive {}
+    record ImplementsDirective(Position position, String interfaceName) implements Directive {}
 
-    record FieldDirective(ParserRuleContext ctx, List<AccessFlag> flags, String name, String descriptor) implements Directive {}
+    record FieldDirective(Position position, List<AccessFlag> flags, String name, String descriptor) implements Directive {}
 
-    record MethodDirective(ParserRuleContext ctx, List<AccessFlag> flags, String name, String descriptor, Optional<Code> code) implements Directive {}
+    record MethodDirective(Position position, List<AccessFlag> flags, String name, String descriptor, Optional<Code> code) implements Directive {}
 
-    record Code(ParserRuleContext ctx, List<CodeLine> lines) implements Node {}
+    record Code(Position position, List<CodeLine> lines) implements Node {}
 
     sealed interface CodeLine extends Node {}
 
-    record LimitLocals(ParserRuleContext ctx, int locals) implements CodeLine {}
-    record LimitStack(ParserRuleContext ctx, int stack) implements CodeLine {}
+    record LimitLocals(Position position, int locals) implements CodeLine {}
+    record LimitStack(Position position, int stack) implements CodeLine {}
 
-    record Instruction(ParserRuleContext ctx, Optional<String> label, String opcode, List<Operand> operands) implements CodeLine {}
+    record Instruction(Position position, Optional<String> label, String opcode, List<Operand> operands) implements CodeLine {}
 
     sealed interface Operand extends Node {
-        record Int(ParserRuleContext ctx, String text) implements Operand {}
-        record Long(ParserRuleContext ctx, String text) implements Operand {}
-        record Double(ParserRuleContext ctx, String text) implements Operand {}
-        record Float(ParserRuleContext ctx, String text) implements Operand {}
-        record Word(ParserRuleContext ctx, String text) implements Operand {}
-        record Str(ParserRuleContext ctx, String text) implements Operand {}
+        record Int(Position position, String text) implements Operand {}
+        record Long(Position position, String text) implements Operand {}
+        record Double(Position position, String text) implements Operand {}
+        record Float(Position position, String text) implements Operand {}
+        record Word(Position position, String text) implements Operand {}
+        record Str(Position position, String text) implements Operand {}
     }
 }
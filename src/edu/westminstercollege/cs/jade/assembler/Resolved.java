@@ -0,0 +1,31 @@
+package edu.westminstercollege.cs.jade.assembler;
+
+import static edu.westminstercollege.cs.jade.assembler.Node.*;
+
+import edu.westminstercollege.cs.jade.classfile.instruction.Opcode;
+import edu.westminstercollege.cs.jade.classfile.instruction.Operand;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Methods lowered from the AST during verification: each instruction's opcode is looked up and its operand text
+ * parsed into classfile operands once, and its offset in the code is assigned. The writer works from these, and
+ * replaces constant operands with their pool indices as it builds the constant pool.
+ */
+sealed interface Resolved {
+
+    record Method(MethodDirective directive, Optional<Code> code) implements Resolved {}
+
+    /**
+     * Method code; {@code maxStack} and {@code maxLocals} are -1 if the method has no .limit directive for them.
+     */
+    record Code(int maxStack, int maxLocals, List<Instruction> instructions, int length) implements Resolved {}
+
+    record Instruction(Opcode opcode, List<Operand> operands, int offset, int length) implements Resolved {
+
+        Instruction withOperands(List<Operand> operands) {
+            return new Instruction(opcode, operands, offset, length);
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package edu.westminstercollege.cs.jade.cache;
+
+import edu.westminstercollege.cs.jade.ClassfileReader;
+import edu.westminstercollege.cs.jade.Disassembler;
+import edu.westminstercollege.cs.jade.InvalidClassException;
+import edu.westminstercollege.cs.jade.UnsupportedClassFeatureException;
+import edu.westminstercollege.cs.jade.util.ClassEntries;
+import edu.westminstercollege.cs.jade.util.Hash64;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An on-disk, content-addressed cache of disassembly output and other per-class results.
+ *
+ * <p>Entries are keyed by a hash of the class bytes together with a namespace naming the kind of result (and its
+ * version), so a result is reused exactly when the class and the tool producing it are both unchanged. Each entry is
+ * its own file, written to a temporary name and atomically renamed into place, so several processes may share a cache
+ * directory without seeing partial entries. Reads are memory-mapped. When the cache grows past its size bound, the
+ * least recently used entries (by modification time, which is touched on every hit) are evicted under an exclusive
+ * lock on the cache directory.</p>
+ */
+public class DisassemblyCache {
+
+    public static final String DISASSEMBLY = "disassembly-v" + Disassembler.VERSION;
+
+    private static final int MAGIC = 0x4A41_4443; // "JADC"
+    private static final int HEADER_SIZE = 4 + 8 + 4;
+    private static final String LOCK_FILE = ".lock";
+    private static final String ENTRY_SUFFIX = ".entry";
+    private static final String TEMP_SUFFIX = ".tmp";
+    // Older temporary files were left by a put that never finished; younger ones may still be being written
+    private static final long STALE_TEMP_MILLIS = 60 * 60 * 1000;
+
+    private final Path directory;
+    private final long maxBytes;
+    private final AtomicLong approximateSize;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public DisassemblyCache(Path directory, long maxBytes) throws IOException {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        Files.createDirectories(directory);
+        this.approximateSize = new AtomicLong(totalSize());
+    }
+
+    public long hits() {
+        return hits.get();
+    }
+
+    public long misses() {
+        return misses.get();
+    }
+
+    /**
+     * Computes the cache key of a class for a given kind of result.
+     */
+    public static long key(String namespace, ByteBuffer classBytes) {
+        return new Hash64()
+                .putString(namespace)
+                .putBytes(classBytes)
+                .get();
+    }
+
+    /**
+     * Returns the disassembly of the given class, from the cache if possible. On a hit the class is not parsed at all.
+     */
+    public String disassemble(ByteBuffer classBytes) throws IOException, InvalidClassException, UnsupportedClassFeatureException {
+        long key = key(DISASSEMBLY, classBytes);
+        var cached = get(DISASSEMBLY, key);
+        if (cached.isPresent())
+            return StandardCharsets.UTF_8.decode(cached.get()).toString();
+
+        var classfile = new ClassfileReader().read(classBytes.duplicate());
+        var text = new StringWriter();
+        new Disassembler(classfile).disassemble(new PrintWriter(text));
+
+        put(DISASSEMBLY, key, ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.UTF_8)));
+        return text.toString();
+    }
+
+    /**
+     * Looks up an entry, returning a read-only view of its contents.
+     */
+    public Optional<ByteBuffer> get(String namespace, long key) throws IOException {
+        var path = entryPath(namespace, key);
+        ByteBuffer mapped;
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE) {
+                misses.incrementAndGet();
+                return Optional.empty();
+            }
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        } catch (NoSuchFileException ex) {
+            misses.incrementAndGet();
+            return Optional.empty();
+        }
+
+        mapped.order(ByteOrder.BIG_ENDIAN);
+        int magic = mapped.getInt();
+        long storedKey = mapped.getLong();
+        int length = mapped.getInt();
+        if (magic != MAGIC || storedKey != key || length != mapped.remaining()) {
+            // Corrupt or foreign file; treat it as a miss and let the next put replace it
+            misses.incrementAndGet();
+            return Optional.empty();
+        }
+
+        touch(path);
+        hits.incrementAndGet();
+        return Optional.of(mapped.slice().asReadOnlyBuffer());
+    }
+
+    /**
+     * Stores an entry, replacing any existing entry with the same namespace and key.
+     */
+    public void put(String namespace, long key, ByteBuffer data) throws IOException {
+        var path = entryPath(namespace, key);
+        Files.createDirectories(path.getParent());
+
+        var temp = Files.createTempFile(path.getParent(), path.getFileName().toString(), TEMP_SUFFIX);
+        try {
+            var header = ByteBuffer.allocate(HEADER_SIZE)
+                    .putInt(MAGIC)
+                    .putLong(key)
+                    .putInt(data.remaining())
+                    .flip();
+            try (var channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                var body = data.duplicate();
+                while (header.hasRemaining() || body.hasRemaining())
+                    channel.write(new ByteBuffer[] { header, body });
+            }
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+
+        if (approximateSize.addAndGet(HEADER_SIZE + data.remaining()) > maxBytes)
+            evict();
+    }
+
+    /**
+     * Deletes least recently used entries until the cache is comfortably below its size bound, along with temporary
+     * files left by interrupted puts.
+     */
+    public void evict() throws IOException {
+        try (var lockChannel = FileChannel.open(directory.resolve(LOCK_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            // Released when the channel is closed
+            lockChannel.lock();
+
+            record CacheFile(Path path, long size, FileTime lastUsed) {}
+            var files = new ArrayList<CacheFile>();
+            long total = 0;
+            long staleBefore = System.currentTimeMillis() - STALE_TEMP_MILLIS;
+            try (var walk = Files.walk(directory)) {
+                for (var path : (Iterable<Path>)walk::iterator) {
+                    if (path.toString().endsWith(TEMP_SUFFIX)) {
+                        deleteIfStale(path, staleBefore);
+                        continue;
+                    }
+                    if (!path.toString().endsWith(ENTRY_SUFFIX))
+                        continue;
+                    try {
+                        var file = new CacheFile(path, Files.size(path), Files.getLastModifiedTime(path));
+                        files.add(file);
+                        total += file.size();
+                    } catch (NoSuchFileException ex) {
+                        // evicted by another process in the meantime
+                    }
+                }
+            }
+
+            long target = maxBytes - maxBytes / 4;
+            if (total > maxBytes) {
+                files.sort(Comparator.comparing(CacheFile::lastUsed));
+                for (var file : files) {
+                    if (total <= target)
+                        break;
+                    try {
+                        Files.deleteIfExists(file.path());
+                        total -= file.size();
+                    } catch (IOException ex) {
+                        // may still be mapped by a reader on platforms that forbid deleting open files
+                    }
+                }
+            }
+
+            approximateSize.set(total);
+        }
+    }
+
+    private static void deleteIfStale(Path temp, long staleBefore) {
+        try {
+            if (Files.getLastModifiedTime(temp).toMillis() < staleBefore)
+                Files.deleteIfExists(temp);
+        } catch (IOException ex) {
+            // renamed into place in the meantime, or retried on the next eviction
+        }
+    }
+
+    private long totalSize() throws IOException {
+        try (var walk = Files.walk(directory)) {
+            return walk.filter(p -> p.toString().endsWith(ENTRY_SUFFIX))
+                    .mapToLong(p -> {
+                        try {
+                            return Files.size(p);
+                        } catch (IOException ex) {
+                            return 0;
+                        }
+                    })
+                    .sum();
+        }
+    }
+
+    private Path entryPath(String namespace, long key) {
+        var hex = Hash64.toHex(key);
+        return directory.resolve(namespace).resolve(hex.substring(0, 2)).resolve(hex + ENTRY_SUFFIX);
+    }
+
+    private void touch(Path path) {
+        try {
+            Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException ex) {
+            // LRU order is best-effort
+        }
+    }
+
+    public static void main(String... args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: DisassemblyCache <cache directory> <jar/class/directory/jrt:/>...");
+            return;
+        }
+
+        var cache = new DisassemblyCache(Path.of(args[0]), 512L << 20);
+        for (int i = 1; i < args.length; ++i) {
+            try (var classes = ClassEntries.stream(args[i])) {
+                classes.parallel().forEach(entry -> {
+                    try {
+                        cache.disassemble(entry.buffer());
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    } catch (InvalidClassException | UnsupportedClassFeatureException | RuntimeException ex) {
+                        System.err.printf("%s: %s\n", entry.name(), ex.getMessage());
+                    }
+                });
+            }
+        }
+
+        System.out.printf("%d hits, %d misses\n", cache.hits(), cache.misses());
+    }
+}
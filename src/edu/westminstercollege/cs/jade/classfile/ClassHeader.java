@@ -0,0 +1,33 @@
+package edu.westminstercollege.cs.jade.classfile;
+
+/**
+ * The part of a classfile before its fields: versions, constant pool, access flags and the indices of the class,
+ * its superclass (0 for java/lang/Object and modules) and its interfaces.
+ */
+public record ClassHeader(
+    int minorVersion,
+    int majorVersion,
+    ConstantPool constantPool,
+    int accessFlags,
+    int thisClass,
+    int superClass,
+    int[] interfaces) {
+
+    public String className() {
+        return constantPool.string(constantPool.clazz(thisClass));
+    }
+
+    /**
+     * Returns the superclass's name, or null if there is none.
+     */
+    public String superClassName() {
+        return superClass == 0 ? null : constantPool.string(constantPool.clazz(superClass));
+    }
+
+    public String[] interfaceNames() {
+        var names = new String[interfaces.length];
+        for (int i = 0; i < interfaces.length; ++i)
+            names[i] = constantPool.string(constantPool.clazz(interfaces[i]));
+        return names;
+    }
+}
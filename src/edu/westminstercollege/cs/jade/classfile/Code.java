@@ -1,4 +1,4 @@
 package edu.westminstercollege.cs.jade.classfile;
 
-public record Code(int maxStack, int maxLocals, byte[] code, /*ExceptionTableEntry[] exceptionTable,*/ Attribute[] attributes) {
+public record Code(int maxStack, int maxLocals, byte[] code, ExceptionTableEntry[] exceptionTable, Attribute[] attributes) {
 }
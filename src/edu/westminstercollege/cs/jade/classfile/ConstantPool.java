@@ -1,6 +1,24 @@
 package edu.westminstercollege.cs.jade.classfile;
 
-public record ConstantPool(Constant[] constants) {
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A class's constant pool. Besides looking constants up by index, the pool can find the index of a constant; the
+ * reverse index this needs is built on first use, so pools that are only read by index never pay for it.
+ */
+public final class ConstantPool {
+
+    private final Constant[] constants;
+    private volatile Map<Constant, Integer> indices;
+
+    public ConstantPool(Constant[] constants) {
+        this.constants = constants;
+    }
+
+    public Constant[] constants() {
+        return constants;
+    }
 
     public int size() {
         return constants.length;
@@ -21,4 +39,58 @@ public record ConstantPool(Constant[] constants) {
     public Constant.NameAndType nameAndType(int index) {
         return (Constant.NameAndType)constants[index];
     }
+
+    /**
+     * Returns the index of a constant equal to {@code c}, or -1 if there is none. If the pool holds duplicates, the
+     * lowest index is returned.
+     */
+    public int indexOf(Constant c) {
+        var map = indices;
+        if (map == null) {
+            // Building the map twice in a race is harmless, since both threads build the same one
+            map = new HashMap<>(constants.length * 2);
+            for (int i = constants.length - 1; i > 0; --i)
+                if (constants[i] != null)
+                    map.put(constants[i], i);
+            indices = map;
+        }
+        return map.getOrDefault(c, -1);
+    }
+
+    public int findUtf8(String value) {
+        return indexOf(new Constant.Utf8(value));
+    }
+
+    public int findClass(String name) {
+        int nameIndex = findUtf8(name);
+        return nameIndex < 0 ? -1 : indexOf(new Constant.Class(nameIndex));
+    }
+
+    public int findNameAndType(String name, String descriptor) {
+        int nameIndex = findUtf8(name);
+        int descriptorIndex = findUtf8(descriptor);
+        if (nameIndex < 0 || descriptorIndex < 0)
+            return -1;
+        return indexOf(new Constant.NameAndType(nameIndex, descriptorIndex));
+    }
+
+    public int findFieldRef(String className, String name, String descriptor) {
+        int classIndex = findClass(className);
+        int natIndex = findNameAndType(name, descriptor);
+        if (classIndex < 0 || natIndex < 0)
+            return -1;
+        return indexOf(new Constant.FieldRef(classIndex, natIndex));
+    }
+
+    /**
+     * Finds a method reference, whether it is a Methodref or an InterfaceMethodref.
+     */
+    public int findMethodRef(String className, String name, String descriptor) {
+        int classIndex = findClass(className);
+        int natIndex = findNameAndType(name, descriptor);
+        if (classIndex < 0 || natIndex < 0)
+            return -1;
+        int index = indexOf(new Constant.MethodRef(classIndex, natIndex));
+        return index >= 0 ? index : indexOf(new Constant.InterfaceMethodRef(classIndex, natIndex));
+    }
 }
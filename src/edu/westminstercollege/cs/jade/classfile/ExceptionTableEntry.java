@@ -0,0 +1,4 @@
+package edu.westminstercollege.cs.jade.classfile;
+
+public record ExceptionTableEntry(int startPc, int endPc, int handlerPc, int catchType) {
+}
@@ -0,0 +1,204 @@
+package edu.westminstercollege.cs.jade.classfile;
+
+import edu.westminstercollege.cs.jade.InvalidClassException;
+import edu.westminstercollege.cs.jade.classfile.attribute.StandardAttributes;
+import edu.westminstercollege.cs.jade.classfile.instruction.CodeWalker;
+import edu.westminstercollege.cs.jade.util.Hash64;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Content hashes of classfile members that do not depend on constant pool layout: every constant pool reference is
+ * hashed by what it resolves to rather than by its index, so the same member compiled into two differently-ordered
+ * pools gets the same fingerprint.
+ *
+ * <p>Besides a member's flags, name and descriptor, a field's ConstantValue is hashed, and for a method its
+ * Exceptions attribute and its code, including the exception table. Debug attributes such as LineNumberTable are
+ * left out, so a member that only moved in the source keeps its fingerprint.</p>
+ */
+public final class Fingerprints {
+
+    private Fingerprints() {}
+
+    public static long field(Field field, ConstantPool cp) {
+        var h = new Hash64()
+                .putInt(field.accessFlags())
+                .putString(cp.string(field.nameIndex()))
+                .putString(cp.string(field.descriptorIndex()));
+
+        // Index 0 (no ConstantValue) hashes as a missing constant
+        putConstant(h, cp, constantValue(field, cp));
+        return h.get();
+    }
+
+    public static long method(Method method, ConstantPool cp) throws InvalidClassException {
+        var h = new Hash64()
+                .putInt(method.accessFlags())
+                .putString(cp.string(method.nameIndex()))
+                .putString(cp.string(method.descriptorIndex()));
+
+        var exceptions = exceptions(method, cp);
+        h.putInt(exceptions.length);
+        for (int exception : exceptions)
+            putConstant(h, cp, exception);
+
+        var code = code(method, cp);
+        if (code != null)
+            putCode(h, code, cp);
+        else
+            h.putLong(-1);
+
+        return h.get();
+    }
+
+    public static long code(Code code, ConstantPool cp) throws InvalidClassException {
+        var h = new Hash64();
+        putCode(h, code, cp);
+        return h.get();
+    }
+
+    /**
+     * Returns the decoded Code attribute of a method, or null if it has none.
+     */
+    public static Code code(Method method, ConstantPool cp) throws InvalidClassException {
+        var info = attribute(method.attributes(), StandardAttributes.Code.getName(), cp);
+        return info == null ? null : StandardAttributes.Code.decode(info, cp);
+    }
+
+    /**
+     * Returns the pool index of a field's ConstantValue, or 0 if it has none.
+     */
+    public static int constantValue(Field field, ConstantPool cp) {
+        var info = attribute(field.attributes(), "ConstantValue", cp);
+        return info == null ? 0 : info.getShort() & 0xffff;
+    }
+
+    /**
+     * Returns the pool indices of the classes in a method's Exceptions attribute (its throws clause).
+     */
+    public static int[] exceptions(Method method, ConstantPool cp) {
+        var info = attribute(method.attributes(), "Exceptions", cp);
+        if (info == null)
+            return new int[0];
+        var exceptions = new int[info.getShort() & 0xffff];
+        for (int i = 0; i < exceptions.length; ++i)
+            exceptions[i] = info.getShort() & 0xffff;
+        return exceptions;
+    }
+
+    /**
+     * Returns the contents of the named attribute, or null if there is none.
+     */
+    private static ByteBuffer attribute(Attribute[] attributes, String name, ConstantPool cp) {
+        for (var attr : attributes) {
+            if (cp.string(attr.nameIndex()).equals(name))
+                return ByteBuffer.wrap(attr.info());
+        }
+        return null;
+    }
+
+    private static void putCode(Hash64 h, Code code, ConstantPool cp) throws InvalidClassException {
+        h.putInt(code.maxStack()).putInt(code.maxLocals()).putInt(code.code().length);
+
+        var walker = new CodeWalker(code.code());
+        var bytes = code.code();
+        while (walker.next()) {
+            int bci = walker.bci();
+            h.putByte(bytes[bci]);
+
+            int cpIndex = walker.constantIndex();
+            if (cpIndex >= 0) {
+                putConstant(h, cp, cpIndex);
+                // Any operands after the constant reference (e.g. invokeinterface's count) are hashed raw
+                int cpWidth = walker.operandTypes().get(0).bytes();
+                for (int i = 1 + cpWidth; i < walker.length(); ++i)
+                    h.putByte(bytes[bci + i]);
+            } else {
+                // Skip switch padding, which depends only on the instruction's offset
+                int start = walker.operandTypes().isEmpty() || walker.operandTypes().get(0).bytes() >= 0
+                        ? 1 : walker.switchTableOffset();
+                for (int i = start; i < walker.length(); ++i)
+                    h.putByte(bytes[bci + i]);
+            }
+        }
+
+        // Catch types are hashed by value; 0 (catch anything) hashes as a missing constant
+        h.putInt(code.exceptionTable().length);
+        for (var entry : code.exceptionTable()) {
+            h.putInt(entry.startPc()).putInt(entry.endPc()).putInt(entry.handlerPc());
+            putConstant(h, cp, entry.catchType());
+        }
+    }
+
+    /**
+     * Hashes the constant at the given index by value, following references to other constants.
+     */
+    public static void putConstant(Hash64 h, ConstantPool cp, int index) {
+        var constant = cp.get(index);
+        if (constant == null) {
+            h.putLong(0);
+            return;
+        }
+
+        switch (constant) {
+            case Constant.Utf8(String s) -> h.putByte(1).putString(s);
+            case Constant.Integer(int n) -> h.putByte(3).putInt(n);
+            case Constant.Float(float f) -> h.putByte(4).putInt(java.lang.Float.floatToRawIntBits(f));
+            case Constant.Long(long l) -> h.putByte(5).putLong(l);
+            case Constant.Double(double d) -> h.putByte(6).putLong(java.lang.Double.doubleToRawLongBits(d));
+            case Constant.Class(int nameIndex) -> {
+                h.putByte(7);
+                putConstant(h, cp, nameIndex);
+            }
+            case Constant.String(int stringIndex) -> {
+                h.putByte(8);
+                putConstant(h, cp, stringIndex);
+            }
+            case Constant.FieldRef(int classIndex, int nameAndTypeIndex) -> {
+                h.putByte(9);
+                putConstant(h, cp, classIndex);
+                putConstant(h, cp, nameAndTypeIndex);
+            }
+            case Constant.MethodRef(int classIndex, int nameAndTypeIndex) -> {
+                h.putByte(10);
+                putConstant(h, cp, classIndex);
+                putConstant(h, cp, nameAndTypeIndex);
+            }
+            case Constant.InterfaceMethodRef(int classIndex, int nameAndTypeIndex) -> {
+                h.putByte(11);
+                putConstant(h, cp, classIndex);
+                putConstant(h, cp, nameAndTypeIndex);
+            }
+            case Constant.NameAndType(int nameIndex, int descriptorIndex) -> {
+                h.putByte(12);
+                putConstant(h, cp, nameIndex);
+                putConstant(h, cp, descriptorIndex);
+            }
+            case Constant.MethodHandle(int referenceKind, int referenceIndex) -> {
+                h.putByte(15).putByte(referenceKind);
+                putConstant(h, cp, referenceIndex);
+            }
+            case Constant.MethodType(int descriptorIndex) -> {
+                h.putByte(16);
+                putConstant(h, cp, descriptorIndex);
+            }
+            // Bootstrap method indices refer to the BootstrapMethods attribute, not the pool, so are hashed raw
+            case Constant.Dynamic(int bootstrapMethodAttrIndex, int nameAndTypeIndex) -> {
+                h.putByte(17).putInt(bootstrapMethodAttrIndex);
+                putConstant(h, cp, nameAndTypeIndex);
+            }
+            case Constant.InvokeDynamic(int bootstrapMethodAttrIndex, int nameAndTypeIndex) -> {
+                h.putByte(18).putInt(bootstrapMethodAttrIndex);
+                putConstant(h, cp, nameAndTypeIndex);
+            }
+            case Constant.Module(int nameIndex) -> {
+                h.putByte(19);
+                putConstant(h, cp, nameIndex);
+            }
+            case Constant.Package(int nameIndex) -> {
+                h.putByte(20);
+                putConstant(h, cp, nameIndex);
+            }
+        }
+    }
+}
@@ -5,6 +5,7 @@ import edu.westminstercollege.cs.jade.InvalidClassException;
 import edu.westminstercollege.cs.jade.classfile.Attribute;
 import edu.westminstercollege.cs.jade.classfile.Code;
 import edu.westminstercollege.cs.jade.classfile.ConstantPool;
+import edu.westminstercollege.cs.jade.classfile.ExceptionTableEntry;
 
 import java.nio.ByteBuffer;
 
@@ -22,11 +23,15 @@ public class CodeAttribute implements StandardAttribute<Code> {
         int codeLength = info.getInt();
         byte[] code = new byte[codeLength];
         info.get(code);
-        int exceptionTableLength = info.getShort();
-        info.position(info.position() + exceptionTableLength * 8);
+        int exceptionTableLength = info.getShort() & 0xffff;
+        var exceptionTable = new ExceptionTableEntry[exceptionTableLength];
+        for (int i = 0; i < exceptionTableLength; ++i)
+            exceptionTable[i] = new ExceptionTableEntry(
+                    info.getShort() & 0xffff, info.getShort() & 0xffff,
+                    info.getShort() & 0xffff, info.getShort() & 0xffff);
 
         Attribute[] attributes = new ClassfileReader().readAttributes(info);
 
-        return new Code(maxStack, maxLocals, code, attributes);
+        return new Code(maxStack, maxLocals, code, exceptionTable, attributes);
     }
 }
@@ -0,0 +1,68 @@
+package edu.westminstercollege.cs.jade.classfile.attribute;
+
+import edu.westminstercollege.cs.jade.InvalidClassException;
+import edu.westminstercollege.cs.jade.classfile.ConstantPool;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * RuntimeVisibleAnnotations and RuntimeInvisibleAnnotations, decoded to the descriptors of the annotation types
+ * present (e.g. {@code Ljava/lang/Deprecated;}). Element values are skipped over rather than decoded.
+ */
+public class RuntimeAnnotationsAttribute implements StandardAttribute<List<String>> {
+
+    private final String name;
+
+    RuntimeAnnotationsAttribute(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public List<String> decode(ByteBuffer info, ConstantPool constantPool) throws InvalidClassException {
+        try {
+            int count = info.getShort() & 0xffff;
+            List<String> types = new ArrayList<>(count);
+            for (int i = 0; i < count; ++i) {
+                types.add(constantPool.string(info.getShort() & 0xffff));
+                skipElementValuePairs(info);
+            }
+            return types;
+        } catch (BufferUnderflowException | ClassCastException | IndexOutOfBoundsException ex) {
+            throw new InvalidClassException("Malformed " + name + " attribute");
+        }
+    }
+
+    private static void skipElementValuePairs(ByteBuffer info) throws InvalidClassException {
+        int pairs = info.getShort() & 0xffff;
+        for (int i = 0; i < pairs; ++i) {
+            info.getShort(); // element name
+            skipElementValue(info);
+        }
+    }
+
+    private static void skipElementValue(ByteBuffer info) throws InvalidClassException {
+        int tag = info.get();
+        switch (tag) {
+            case 'B', 'C', 'D', 'F', 'I', 'J', 'S', 'Z', 's', 'c' -> info.getShort();
+            case 'e' -> info.getInt(); // type name and constant name
+            case '@' -> {
+                info.getShort();
+                skipElementValuePairs(info);
+            }
+            case '[' -> {
+                int count = info.getShort() & 0xffff;
+                for (int i = 0; i < count; ++i)
+                    skipElementValue(info);
+            }
+            default -> throw new InvalidClassException(String.format("Unknown annotation element tag '%c'", (char)tag));
+        }
+    }
+}
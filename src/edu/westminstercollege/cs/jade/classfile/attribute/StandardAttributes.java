@@ -10,6 +10,10 @@ public final class StandardAttributes {
 
     public static final SourceFileAttribute SourceFile = register(new SourceFileAttribute());
     public static final CodeAttribute Code = register(new CodeAttribute());
+    public static final RuntimeAnnotationsAttribute RuntimeVisibleAnnotations =
+            register(new RuntimeAnnotationsAttribute("RuntimeVisibleAnnotations"));
+    public static final RuntimeAnnotationsAttribute RuntimeInvisibleAnnotations =
+            register(new RuntimeAnnotationsAttribute("RuntimeInvisibleAnnotations"));
 
     private StandardAttributes() {}
 
@@ -0,0 +1,184 @@
+package edu.westminstercollege.cs.jade.classfile.instruction;
+
+import edu.westminstercollege.cs.jade.InvalidClassException;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Steps through the instructions of a method's bytecode without decoding their operands. Useful for analyses that
+ * only care about opcodes and a few raw operand values, and which would otherwise allocate an {@link Instruction}
+ * per instruction.
+ *
+ * <p>As with {@link Instruction#read}, a {@code wide} prefix is reported as an instruction of its own, and the
+ * instruction following it is reported as widened.</p>
+ */
+public final class CodeWalker {
+
+    private final ByteBuffer code;
+    private int bci = -1;
+    private int length = 0;
+    private Opcode opcode;
+    private boolean wide = false;
+
+    public CodeWalker(byte[] code) {
+        this(ByteBuffer.wrap(code));
+    }
+
+    public CodeWalker(ByteBuffer code) {
+        this.code = code.slice();
+    }
+
+    /**
+     * Advances to the next instruction, returning false at the end of the code.
+     */
+    public boolean next() throws InvalidClassException {
+        int pos = (bci < 0) ? 0 : bci + length;
+        if (pos >= code.limit())
+            return false;
+
+        wide = (opcode == Opcode.WIDE);
+
+        int num = code.get(pos) & 0xff;
+        var maybeOpcode = Opcode.of(num);
+        if (maybeOpcode.isEmpty())
+            throw new InvalidClassException(String.format("Unknown opcode %d at offset %d", num, pos));
+        opcode = maybeOpcode.get();
+
+        if (wide && !opcode.isWidenable())
+            throw new InvalidClassException(String.format("wide followed by opcode %d, which is not widenable", num));
+
+        bci = pos;
+        // Switch lengths come from the code itself, so they're computed in long to keep a huge table from wrapping
+        // around to a length that looks valid (or that never advances)
+        long length = computeLength();
+        if (length <= 0 || bci + length > code.limit())
+            throw new InvalidClassException(String.format("Instruction at offset %d runs past end of code", bci));
+        this.length = (int)length;
+        return true;
+    }
+
+    public int bci() {
+        return bci;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public Opcode opcode() {
+        return opcode;
+    }
+
+    public boolean isWide() {
+        return wide;
+    }
+
+    public int u1(int offset) {
+        return code.get(bci + offset) & 0xff;
+    }
+
+    public int u2(int offset) {
+        return code.getShort(bci + offset) & 0xffff;
+    }
+
+    public int s1(int offset) {
+        return code.get(bci + offset);
+    }
+
+    public int s2(int offset) {
+        return code.getShort(bci + offset);
+    }
+
+    public int s4(int offset) {
+        return code.getInt(bci + offset);
+    }
+
+    /**
+     * Returns the constant pool index referenced by the current instruction, or -1 if it has none.
+     */
+    public int constantIndex() {
+        var types = operandTypes();
+        if (types.isEmpty())
+            return -1;
+        return switch (types.get(0)) {
+            case Imm8 -> u1(1);
+            case Imm16, RefType, Field, Method, DynamicCallSite -> u2(1);
+            default -> -1;
+        };
+    }
+
+    /**
+     * Returns the absolute target of the current instruction if it is a goto, jsr or conditional branch, or -1.
+     */
+    public int branchTarget() {
+        var types = operandTypes();
+        if (types.isEmpty())
+            return -1;
+        return switch (types.get(0)) {
+            case BranchOffset16 -> bci + s2(1);
+            case BranchOffset32 -> bci + s4(1);
+            default -> -1;
+        };
+    }
+
+    /**
+     * Returns the offset (relative to the current instruction) of the first byte after the padding of a
+     * tableswitch or lookupswitch.
+     */
+    public int switchTableOffset() {
+        return 1 + (4 - (bci + 1) % 4) % 4;
+    }
+
+    /**
+     * Returns the absolute targets of the current tableswitch or lookupswitch, default target first.
+     */
+    public int[] switchTargets() {
+        int p = switchTableOffset();
+        int[] targets;
+        if (opcode == Opcode.TABLESWITCH) {
+            int low = s4(p + 4), high = s4(p + 8);
+            targets = new int[high - low + 2];
+            for (int i = 1; i < targets.length; ++i)
+                targets[i] = bci + s4(p + 12 + (i - 1) * 4);
+        } else if (opcode == Opcode.LOOKUPSWITCH) {
+            int pairs = s4(p + 4);
+            targets = new int[pairs + 1];
+            for (int i = 1; i < targets.length; ++i)
+                targets[i] = bci + s4(p + 8 + (i - 1) * 8 + 4);
+        } else
+            throw new IllegalStateException(opcode.mnemonic() + " is not a switch");
+
+        targets[0] = bci + s4(p);
+        return targets;
+    }
+
+    public List<OperandType> operandTypes() {
+        return wide ? opcode.wideOperandTypes() : opcode.operandTypes();
+    }
+
+    private long computeLength() throws InvalidClassException {
+        if (opcode == Opcode.TABLESWITCH) {
+            int p = switchTableOffset();
+            if (bci + p + 12 > code.limit())
+                throw new InvalidClassException(String.format("Truncated tableswitch at offset %d", bci));
+            int low = s4(p + 4), high = s4(p + 8);
+            if (high < low)
+                throw new InvalidClassException(String.format("Invalid tableswitch bounds at offset %d", bci));
+            return p + 12 + ((long)high - low + 1) * 4;
+        } else if (opcode == Opcode.LOOKUPSWITCH) {
+            int p = switchTableOffset();
+            if (bci + p + 8 > code.limit())
+                throw new InvalidClassException(String.format("Truncated lookupswitch at offset %d", bci));
+            int pairs = s4(p + 4);
+            if (pairs < 0)
+                throw new InvalidClassException(String.format("Invalid lookupswitch pair count at offset %d", bci));
+            return p + 8 + (long)pairs * 8;
+        }
+
+        int length = 1;
+        for (var type : operandTypes())
+            length += type.bytes();
+        return length;
+    }
+}
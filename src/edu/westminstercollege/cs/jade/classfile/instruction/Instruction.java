@@ -21,8 +21,6 @@ public record Instruction(Opcode opcode, List<Operand> operands) {
 
         if (wide && !opcode.isWidenable())
             throw new InvalidClassException(String.format("wide followed by opcode %d, which is not widenable", num));
-        if (opcode == Opcode.WIDE)
-            throw new RuntimeException("Cannot handle wide instructions");
 
         var operandTypes = wide ? opcode.wideOperandTypes() : opcode.operandTypes();
         List<Operand> operands = new ArrayList<>(operandTypes.size());
@@ -39,6 +37,7 @@ public record Instruction(Opcode opcode, List<Operand> operands) {
                     case Constant.Integer(int n) -> new Operand.Imm8.Integer(n);
                     case Constant.Float(float f) -> new Operand.Imm8.Float(f);
                     case Constant.String(int index) -> new Operand.Imm8.String(cp.string(index));
+                    case Constant.Class(int index) -> new Operand.Imm8.Class(cp.string(index));
                     default -> throw new InvalidClassException("Invalid operand for Imm8");
                 };
 
@@ -48,6 +47,7 @@ public record Instruction(Opcode opcode, List<Operand> operands) {
                         case Constant.Integer(int n) -> new Operand.Imm16.Integer(n);
                         case Constant.Float(float f) -> new Operand.Imm16.Float(f);
                         case Constant.String(int index) -> new Operand.Imm16.String(cp.string(index));
+                        case Constant.Class(int index) -> new Operand.Imm16.Class(cp.string(index));
                         case Constant.Long(long l) -> new Operand.Imm16.Long(l);
                         case Constant.Double(double d) -> new Operand.Imm16.Double(d);
                         default -> throw new InvalidClassException("Invalid operand for Imm16: " + constant);
@@ -68,8 +68,13 @@ public record Instruction(Opcode opcode, List<Operand> operands) {
                 }
 
                 case DynamicCallSite -> {
-                    b.getInt();
-                    yield new Operand.DynamicCallSite();
+                    // The two zero bytes that follow are read as the instruction's U8 operands
+                    var info = cp.get(b.getShort() & 0xffff);
+                    if (!(info instanceof Constant.InvokeDynamic dInfo))
+                        throw new InvalidClassException("Invalid operand for DynamicCallSite");
+                    var nameAndType = cp.nameAndType(dInfo.nameAndTypeIndex());
+                    yield new Operand.DynamicCallSite(dInfo.bootstrapMethodAttrIndex(),
+                            cp.string(nameAndType.nameIndex()), cp.string(nameAndType.descriptorIndex()));
                 }
 
                 case Method -> {
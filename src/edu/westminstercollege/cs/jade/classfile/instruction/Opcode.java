@@ -213,12 +213,14 @@ public enum Opcode {
     private final List<OperandType> operands;
     private final List<OperandType> wideOperands;
     private static Map<Integer, Opcode> opcodes = new HashMap<>(256);
+    private static Map<String, Opcode> mnemonics = new HashMap<>(512);
 
     static {
         for (var opcode : Opcode.values()) {
             if (opcodes.containsKey(opcode.value))
                 throw new RuntimeException(String.format("Multiple opcodes of value %d!\n", opcode.value));
             opcodes.put(opcode.value, opcode);
+            mnemonics.put(opcode.mnemonic(), opcode);
         }
     }
 
@@ -261,12 +263,6 @@ public enum Opcode {
     }
 
     public static Optional<Opcode> of(String mnemonic) {
-        if (!mnemonic.equals(mnemonic.toLowerCase()))
-            return Optional.empty();
-        try {
-            return Optional.of(valueOf(mnemonic.toUpperCase()));
-        } catch (IllegalArgumentException ex) {
-            return Optional.empty();
-        }
+        return Optional.ofNullable(mnemonics.get(mnemonic));
     }
 }
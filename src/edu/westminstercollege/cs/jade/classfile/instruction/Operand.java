@@ -48,6 +48,7 @@ public sealed interface Operand {
         public record Integer(int value) implements Imm8 {}
         public record Float(float value) implements Imm8 {}
         public record String(java.lang.String value) implements Imm8 {}
+        public record Class(java.lang.String name) implements Imm8 {}
     }
 
     public sealed interface Imm16 extends Operand {
@@ -61,6 +62,7 @@ public sealed interface Operand {
         public record String(java.lang.String value) implements Imm16 {}
         public record Long(long value) implements Imm16 {}
         public record Double(double value) implements Imm16 {}
+        public record Class(java.lang.String name) implements Imm16 {}
     }
 
     public record RefType(String text) implements Operand {
@@ -77,7 +79,7 @@ public sealed interface Operand {
         }
     }
 
-    public record DynamicCallSite() implements Operand {
+    public record DynamicCallSite(int bootstrapMethodIndex, String name, String descriptor) implements Operand {
         @Override
         public OperandType type() {
             return OperandType.DynamicCallSite;
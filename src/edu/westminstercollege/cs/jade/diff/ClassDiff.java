@@ -0,0 +1,28 @@
+package edu.westminstercollege.cs.jade.diff;
+
+import java.util.List;
+
+/**
+ * Differences between two versions of a class. {@code headerChanges} describes changes to the class itself (flags,
+ * superclass, interfaces, version) in human-readable form.
+ */
+public record ClassDiff(String className, Change change, List<String> headerChanges, List<MemberDiff> members) {
+
+    public enum Change {
+        Added, Removed, Changed
+    }
+
+    public enum MemberKind {
+        Field, Method
+    }
+
+    /**
+     * A changed member. For changed methods, {@code codeDiff} holds the instruction-level difference as lines prefixed
+     * with "-" or "+" (and " " for unchanged context); it is empty for added/removed members and for fields.
+     */
+    public record MemberDiff(MemberKind kind, String name, String descriptor, Change change, List<String> codeDiff) {}
+
+    public boolean isEmpty() {
+        return change == Change.Changed && headerChanges.isEmpty() && members.isEmpty();
+    }
+}
@@ -0,0 +1,316 @@
+package edu.westminstercollege.cs.jade.diff;
+
+import static edu.westminstercollege.cs.jade.diff.ClassDiff.*;
+
+import edu.westminstercollege.cs.jade.ClassfileReader;
+import edu.westminstercollege.cs.jade.Disassembler;
+import edu.westminstercollege.cs.jade.InvalidClassException;
+import edu.westminstercollege.cs.jade.UnsupportedClassFeatureException;
+import edu.westminstercollege.cs.jade.classfile.*;
+import edu.westminstercollege.cs.jade.classfile.instruction.Instruction;
+import edu.westminstercollege.cs.jade.classfile.instruction.Opcode;
+import edu.westminstercollege.cs.jade.classfile.instruction.Operand;
+import edu.westminstercollege.cs.jade.util.ClassEntries;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Structural comparison of two versions of a class, or of two sets of classes (jars, directories, ...).
+ *
+ * <p>Members are matched by name and descriptor and compared by {@link Fingerprints}, so differences in constant
+ * pool layout alone never show up as changes. Instructions are only decoded for methods whose fingerprints
+ * differ.</p>
+ */
+public class ClassfileDiff {
+
+    private static final int CONTEXT_LINES = 2;
+
+    public static ClassDiff diff(Classfile before, Classfile after) throws InvalidClassException {
+        var beforeCp = before.constantPool();
+        var afterCp = after.constantPool();
+
+        var className = className(afterCp, after.thisClass());
+        List<String> headerChanges = new ArrayList<>();
+
+        if (before.majorVersion() != after.majorVersion() || before.minorVersion() != after.minorVersion())
+            headerChanges.add(String.format("version %d.%d -> %d.%d",
+                    before.majorVersion(), before.minorVersion(), after.majorVersion(), after.minorVersion()));
+        if (before.accessFlags() != after.accessFlags())
+            headerChanges.add(String.format("access flags 0x%04x -> 0x%04x", before.accessFlags(), after.accessFlags()));
+
+        var beforeSuper = className(beforeCp, before.superClass());
+        var afterSuper = className(afterCp, after.superClass());
+        if (!beforeSuper.equals(afterSuper))
+            headerChanges.add(String.format("superclass %s -> %s", beforeSuper, afterSuper));
+
+        var beforeInterfaces = interfaces(before);
+        var afterInterfaces = interfaces(after);
+        for (var iface : beforeInterfaces)
+            if (!afterInterfaces.contains(iface))
+                headerChanges.add("removed interface " + iface);
+        for (var iface : afterInterfaces)
+            if (!beforeInterfaces.contains(iface))
+                headerChanges.add("added interface " + iface);
+
+        List<MemberDiff> members = new ArrayList<>();
+        diffFields(before, after, members);
+        diffMethods(before, after, members);
+
+        return new ClassDiff(className, Change.Changed, headerChanges, members);
+    }
+
+    /**
+     * Compares all classes at two locations (see {@link ClassEntries#stream}). Classes are compared in parallel;
+     * identical classes are skipped without being parsed. Classes with no differences are omitted from the result,
+     * which is sorted by class name.
+     */
+    public static List<ClassDiff> diff(String beforeLocation, String afterLocation) throws IOException {
+        Map<String, ClassEntries.Entry> before;
+        try (var classes = ClassEntries.stream(beforeLocation)) {
+            before = classes.parallel()
+                    .collect(Collectors.toConcurrentMap(ClassEntries.Entry::name, e -> e, (a, b) -> a));
+        }
+
+        Set<String> seen = ConcurrentHashMap.newKeySet();
+        List<ClassDiff> diffs;
+        try (var classes = ClassEntries.stream(afterLocation)) {
+            diffs = classes.parallel()
+                    .flatMap(afterEntry -> {
+                        seen.add(afterEntry.name());
+                        var beforeEntry = before.get(afterEntry.name());
+                        if (beforeEntry == null)
+                            return Stream.of(new ClassDiff(afterEntry.name(), Change.Added, List.of(), List.of()));
+                        if (Arrays.equals(beforeEntry.bytes(), afterEntry.bytes()))
+                            return Stream.empty();
+                        var diff = diff(beforeEntry, afterEntry);
+                        return diff.isEmpty() ? Stream.empty() : Stream.of(diff);
+                    })
+                    .collect(Collectors.toCollection(ArrayList::new));
+        }
+
+        for (var name : before.keySet())
+            if (!seen.contains(name))
+                diffs.add(new ClassDiff(name, Change.Removed, List.of(), List.of()));
+
+        diffs.sort(Comparator.comparing(ClassDiff::className));
+        return diffs;
+    }
+
+    private static ClassDiff diff(ClassEntries.Entry before, ClassEntries.Entry after) {
+        try {
+            var reader = new ClassfileReader();
+            return diff(reader.read(before.buffer()), reader.read(after.buffer()));
+        } catch (InvalidClassException | UnsupportedClassFeatureException | RuntimeException ex) {
+            return new ClassDiff(after.name(), Change.Changed, List.of("could not compare: " + ex.getMessage()), List.of());
+        }
+    }
+
+    public static void print(PrintWriter out, List<ClassDiff> diffs) {
+        for (var diff : diffs) {
+            var marker = switch (diff.change()) {
+                case Added -> "+";
+                case Removed -> "-";
+                case Changed -> "*";
+            };
+            out.printf("%s %s\n", marker, diff.className());
+
+            for (var change : diff.headerChanges())
+                out.printf("    %s\n", change);
+
+            for (var member : diff.members()) {
+                var memberMarker = switch (member.change()) {
+                    case Added -> "+";
+                    case Removed -> "-";
+                    case Changed -> "*";
+                };
+                out.printf("  %s %s %s %s\n", memberMarker, member.kind().toString().toLowerCase(),
+                        member.name(), member.descriptor());
+                for (var line : member.codeDiff())
+                    out.printf("        %s\n", line);
+            }
+        }
+        out.flush();
+    }
+
+    private static void diffFields(Classfile before, Classfile after, List<MemberDiff> members) {
+        var beforeCp = before.constantPool();
+        var afterCp = after.constantPool();
+
+        Map<String, Field> beforeFields = new LinkedHashMap<>();
+        for (var field : before.fields())
+            beforeFields.put(memberKey(beforeCp, field.nameIndex(), field.descriptorIndex()), field);
+
+        for (var field : after.fields()) {
+            var name = afterCp.string(field.nameIndex());
+            var descriptor = afterCp.string(field.descriptorIndex());
+            var beforeField = beforeFields.remove(name + " " + descriptor);
+            if (beforeField == null)
+                members.add(new MemberDiff(MemberKind.Field, name, descriptor, Change.Added, List.of()));
+            else if (Fingerprints.field(beforeField, beforeCp) != Fingerprints.field(field, afterCp))
+                members.add(new MemberDiff(MemberKind.Field, name, descriptor, Change.Changed,
+                        fieldDiff(beforeField, beforeCp, field, afterCp)));
+        }
+
+        for (var field : beforeFields.values())
+            members.add(new MemberDiff(MemberKind.Field, beforeCp.string(field.nameIndex()),
+                    beforeCp.string(field.descriptorIndex()), Change.Removed, List.of()));
+    }
+
+    private static void diffMethods(Classfile before, Classfile after, List<MemberDiff> members) throws InvalidClassException {
+        var beforeCp = before.constantPool();
+        var afterCp = after.constantPool();
+
+        Map<String, Method> beforeMethods = new LinkedHashMap<>();
+        for (var method : before.methods())
+            beforeMethods.put(memberKey(beforeCp, method.nameIndex(), method.descriptorIndex()), method);
+
+        for (var method : after.methods()) {
+            var name = afterCp.string(method.nameIndex());
+            var descriptor = afterCp.string(method.descriptorIndex());
+            var beforeMethod = beforeMethods.remove(name + " " + descriptor);
+            if (beforeMethod == null)
+                members.add(new MemberDiff(MemberKind.Method, name, descriptor, Change.Added, List.of()));
+            else if (Fingerprints.method(beforeMethod, beforeCp) != Fingerprints.method(method, afterCp))
+                members.add(new MemberDiff(MemberKind.Method, name, descriptor, Change.Changed,
+                        methodDiff(beforeMethod, beforeCp, method, afterCp)));
+        }
+
+        for (var method : beforeMethods.values())
+            members.add(new MemberDiff(MemberKind.Method, beforeCp.string(method.nameIndex()),
+                    beforeCp.string(method.descriptorIndex()), Change.Removed, List.of()));
+    }
+
+    private static List<String> fieldDiff(Field before, ConstantPool beforeCp, Field after, ConstantPool afterCp) {
+        List<String> lines = new ArrayList<>();
+        if (before.accessFlags() != after.accessFlags())
+            lines.add(String.format("access flags 0x%04x -> 0x%04x", before.accessFlags(), after.accessFlags()));
+
+        var beforeValue = constantText(beforeCp, Fingerprints.constantValue(before, beforeCp));
+        var afterValue = constantText(afterCp, Fingerprints.constantValue(after, afterCp));
+        if (!beforeValue.equals(afterValue))
+            lines.add(String.format("constant value %s -> %s", beforeValue, afterValue));
+        return lines;
+    }
+
+    private static List<String> methodDiff(Method before, ConstantPool beforeCp, Method after, ConstantPool afterCp) throws InvalidClassException {
+        List<String> lines = new ArrayList<>();
+        if (before.accessFlags() != after.accessFlags())
+            lines.add(String.format("access flags 0x%04x -> 0x%04x", before.accessFlags(), after.accessFlags()));
+
+        var beforeThrows = classNames(beforeCp, Fingerprints.exceptions(before, beforeCp));
+        var afterThrows = classNames(afterCp, Fingerprints.exceptions(after, afterCp));
+        if (!beforeThrows.equals(afterThrows))
+            lines.add(String.format("throws %s -> %s", beforeThrows, afterThrows));
+
+        var beforeCode = Fingerprints.code(before, beforeCp);
+        var afterCode = Fingerprints.code(after, afterCp);
+        if (beforeCode == null || afterCode == null) {
+            if (beforeCode != afterCode)
+                lines.add(beforeCode == null ? "code added" : "code removed");
+            return lines;
+        }
+
+        if (beforeCode.maxStack() != afterCode.maxStack())
+            lines.add(String.format("max stack %d -> %d", beforeCode.maxStack(), afterCode.maxStack()));
+        if (beforeCode.maxLocals() != afterCode.maxLocals())
+            lines.add(String.format("max locals %d -> %d", beforeCode.maxLocals(), afterCode.maxLocals()));
+
+        lines.addAll(LineDiff.diff(instructionLines(beforeCode, beforeCp), instructionLines(afterCode, afterCp), CONTEXT_LINES));
+
+        var beforeHandlers = exceptionTableLines(beforeCode, beforeCp);
+        var afterHandlers = exceptionTableLines(afterCode, afterCp);
+        if (!beforeHandlers.equals(afterHandlers)) {
+            lines.add("exception table:");
+            lines.addAll(LineDiff.diff(beforeHandlers, afterHandlers, CONTEXT_LINES));
+        }
+        return lines;
+    }
+
+    private static List<String> exceptionTableLines(Code code, ConstantPool cp) {
+        List<String> lines = new ArrayList<>();
+        for (var entry : code.exceptionTable())
+            lines.add(String.format("%d-%d -> %d %s", entry.startPc(), entry.endPc(), entry.handlerPc(),
+                    entry.catchType() == 0 ? "any" : className(cp, entry.catchType())));
+        return lines;
+    }
+
+    /**
+     * Renders each instruction without its offset, and with branch targets relative to the instruction, so that
+     * inserting code doesn't make every following line differ.
+     */
+    private static List<String> instructionLines(Code code, ConstantPool cp) throws InvalidClassException {
+        List<String> lines = new ArrayList<>();
+        var b = ByteBuffer.wrap(code.code());
+        boolean wide = false;
+        while (b.hasRemaining()) {
+            int bci = b.position();
+            var instr = Instruction.read(b, cp, wide);
+            var text = new StringBuilder(instr.opcode().mnemonic());
+            for (var operand : instr.operands()) {
+                text.append(' ');
+                switch (operand) {
+                    case Operand.BranchOffset16(int target) -> text.append(String.format("%+d", target - bci));
+                    case Operand.BranchOffset32(int target) -> text.append(String.format("%+d", target - bci));
+                    default -> text.append(Disassembler.operandText(operand));
+                }
+            }
+            lines.add(text.toString());
+            wide = (instr.opcode() == Opcode.WIDE);
+        }
+        return lines;
+    }
+
+    private static String memberKey(ConstantPool cp, int nameIndex, int descriptorIndex) {
+        return cp.string(nameIndex) + " " + cp.string(descriptorIndex);
+    }
+
+    private static String className(ConstantPool cp, int classIndex) {
+        if (classIndex == 0)
+            return "";
+        return cp.string(cp.clazz(classIndex));
+    }
+
+    private static List<String> classNames(ConstantPool cp, int[] classIndices) {
+        List<String> names = new ArrayList<>(classIndices.length);
+        for (int index : classIndices)
+            names.add(className(cp, index));
+        return names;
+    }
+
+    /**
+     * Renders a field's constant value, or "none" for index 0.
+     */
+    private static String constantText(ConstantPool cp, int index) {
+        return switch (cp.get(index)) {
+            case null -> "none";
+            case Constant.Integer(int n) -> "" + n;
+            case Constant.Long(long l) -> l + "L";
+            case Constant.Float(float f) -> f + "f";
+            case Constant.Double(double d) -> "" + d;
+            case Constant.String(int stringIndex) -> String.format("\"%s\"", cp.string(stringIndex));
+            default -> cp.get(index).toString();
+        };
+    }
+
+    private static Set<String> interfaces(Classfile cf) {
+        Set<String> names = new LinkedHashSet<>();
+        for (var iface : cf.interfaces())
+            names.add(className(cf.constantPool(), iface));
+        return names;
+    }
+
+    public static void main(String... args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: ClassfileDiff <before jar/class/directory> <after jar/class/directory>");
+            return;
+        }
+
+        print(new PrintWriter(System.out), diff(args[0], args[1]));
+    }
+}
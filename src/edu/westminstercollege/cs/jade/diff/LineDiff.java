@@ -0,0 +1,158 @@
+package edu.westminstercollege.cs.jade.diff;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Minimal line diff (Myers' O(ND) algorithm, in linear space), used for instruction-level differences between two versions of a method.
+ */
+final class LineDiff {
+
+    private enum Op {
+        Keep, Delete, Insert
+    }
+
+    private LineDiff() {}
+
+    /**
+     * Returns the lines of a unified-style diff of {@code a} against {@code b}: removed lines prefixed with "-", added
+     * lines with "+", and up to {@code context} unchanged lines on either side of each change prefixed with " ".
+     * Skipped runs of unchanged lines are marked with "@@ #n", n being the index of the next line in {@code a}.
+     */
+    static List<String> diff(List<String> a, List<String> b, int context) {
+        var ops = editScript(a, b);
+
+        // Work out which unchanged lines are close enough to a change to be shown
+        boolean[] show = new boolean[ops.size()];
+        for (int i = 0; i < ops.size(); ++i) {
+            if (ops.get(i) != Op.Keep) {
+                for (int j = Math.max(0, i - context); j <= Math.min(ops.size() - 1, i + context); ++j)
+                    show[j] = true;
+            }
+        }
+
+        List<String> lines = new ArrayList<>();
+        int ai = 0, bi = 0;
+        boolean skipped = false;
+        for (int i = 0; i < ops.size(); ++i) {
+            var op = ops.get(i);
+            if (!show[i]) {
+                skipped = true;
+            } else {
+                if (skipped) {
+                    lines.add("@@ #" + ai);
+                    skipped = false;
+                }
+                switch (op) {
+                    case Keep -> lines.add(" " + a.get(ai));
+                    case Delete -> lines.add("-" + a.get(ai));
+                    case Insert -> lines.add("+" + b.get(bi));
+                }
+            }
+
+            switch (op) {
+                case Keep -> { ++ai; ++bi; }
+                case Delete -> ++ai;
+                case Insert -> ++bi;
+            }
+        }
+
+        return lines;
+    }
+
+    private static List<Op> editScript(List<String> a, List<String> b) {
+        List<Op> ops = new ArrayList<>(a.size() + b.size());
+        int max = (a.size() + b.size() + 1) / 2 + 1;
+        var forward = new int[2 * max + 3];
+        var backward = new int[2 * max + 3];
+        editScript(a, 0, a.size(), b, 0, b.size(), ops, forward, backward);
+        return ops;
+    }
+
+    /**
+     * Appends the edit script from {@code a[aStart, aEnd)} to {@code b[bStart, bEnd)}. This is the linear space
+     * refinement of Myers' algorithm: the middle snake of an optimal path is found by searching forward and backward
+     * at once, and the parts before and after it are diffed recursively, so only the two frontiers are kept rather
+     * than one per edit.
+     */
+    private static void editScript(List<String> a, int aStart, int aEnd, List<String> b, int bStart, int bEnd,
+                                   List<Op> ops, int[] forward, int[] backward) {
+        while (aStart < aEnd && bStart < bEnd && a.get(aStart).equals(b.get(bStart))) {
+            ops.add(Op.Keep);
+            ++aStart;
+            ++bStart;
+        }
+        int suffix = 0;
+        while (aStart < aEnd && bStart < bEnd && a.get(aEnd - 1).equals(b.get(bEnd - 1))) {
+            ++suffix;
+            --aEnd;
+            --bEnd;
+        }
+
+        if (aStart == aEnd) {
+            for (int i = bStart; i < bEnd; ++i)
+                ops.add(Op.Insert);
+        } else if (bStart == bEnd) {
+            for (int i = aStart; i < aEnd; ++i)
+                ops.add(Op.Delete);
+        } else {
+            // Both sides are non-empty and differ at each end, so at least two edits are needed and both halves
+            // around the middle snake are smaller than the whole
+            var snake = middleSnake(a, aStart, aEnd, b, bStart, bEnd, forward, backward);
+            editScript(a, aStart, aStart + snake[0], b, bStart, bStart + snake[1], ops, forward, backward);
+            for (int i = snake[0]; i < snake[2]; ++i)
+                ops.add(Op.Keep);
+            editScript(a, aStart + snake[2], aEnd, b, bStart + snake[3], bEnd, ops, forward, backward);
+        }
+
+        for (int i = 0; i < suffix; ++i)
+            ops.add(Op.Keep);
+    }
+
+    /**
+     * Returns the start and end (x, y, u, v, relative to {@code aStart} and {@code bStart}) of the middle snake of an
+     * optimal path. {@code forward} holds the furthest x reached on each diagonal k = x - y from the start, and
+     * {@code backward} the furthest reached from the end, counted back from the end.
+     */
+    private static int[] middleSnake(List<String> a, int aStart, int aEnd, List<String> b, int bStart, int bEnd,
+                                     int[] forward, int[] backward) {
+        int n = aEnd - aStart, m = bEnd - bStart;
+        int delta = n - m;
+        boolean odd = (delta & 1) != 0;
+        int offset = forward.length / 2;
+        forward[offset + 1] = 0;
+        backward[offset + 1] = 0;
+
+        for (int d = 0; d <= (n + m + 1) / 2; ++d) {
+            for (int k = -d; k <= d; k += 2) {
+                int x = k == -d || (k != d && forward[offset + k - 1] < forward[offset + k + 1])
+                        ? forward[offset + k + 1] : forward[offset + k - 1] + 1;
+                int y = x - k;
+                int startX = x, startY = y;
+                while (x < n && y < m && a.get(aStart + x).equals(b.get(bStart + y))) {
+                    ++x;
+                    ++y;
+                }
+                forward[offset + k] = x;
+                if (odd && delta - k >= -(d - 1) && delta - k <= d - 1 && x + backward[offset + delta - k] >= n)
+                    return new int[] { startX, startY, x, y };
+            }
+
+            for (int k = -d; k <= d; k += 2) {
+                int x = k == -d || (k != d && backward[offset + k - 1] < backward[offset + k + 1])
+                        ? backward[offset + k + 1] : backward[offset + k - 1] + 1;
+                int y = x - k;
+                int startX = x, startY = y;
+                while (x < n && y < m && a.get(aEnd - 1 - x).equals(b.get(bEnd - 1 - y))) {
+                    ++x;
+                    ++y;
+                }
+                backward[offset + k] = x;
+                if (!odd && delta - k >= -d && delta - k <= d && x + forward[offset + delta - k] >= n)
+                    return new int[] { n - x, m - y, n - startX, m - startY };
+            }
+        }
+
+        throw new IllegalStateException("no middle snake");
+    }
+}
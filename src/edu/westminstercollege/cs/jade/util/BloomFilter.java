@@ -0,0 +1,68 @@
+package edu.westminstercollege.cs.jade.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A Bloom filter over strings: {@link #mightContain} never gives a false negative, and gives false positives at
+ * roughly the rate the filter was sized for. The k probe positions come from one 64-bit hash by double hashing.
+ */
+public final class BloomFilter {
+
+    private final long[] bits;
+    private final int hashes;
+
+    private BloomFilter(long[] bits, int hashes) {
+        this.bits = bits;
+        this.hashes = hashes;
+    }
+
+    /**
+     * Creates a filter sized for the given number of keys, at ten bits per key (about a 1% false positive rate).
+     */
+    public static BloomFilter forKeys(int expectedKeys) {
+        int words = Math.max(1, (expectedKeys * 10 + 63) / 64);
+        return new BloomFilter(new long[words], 7);
+    }
+
+    public void add(String key) {
+        long h = new Hash64().putString(key).get();
+        int h1 = (int)h, h2 = (int)(h >>> 32);
+        long size = bits.length * 64L;
+        for (int i = 0; i < hashes; ++i) {
+            int bit = (int)Math.floorMod(h1 + (long)i * h2, size);
+            bits[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    public boolean mightContain(String key) {
+        long h = new Hash64().putString(key).get();
+        int h1 = (int)h, h2 = (int)(h >>> 32);
+        long size = bits.length * 64L;
+        for (int i = 0; i < hashes; ++i) {
+            int bit = (int)Math.floorMod(h1 + (long)i * h2, size);
+            if ((bits[bit >>> 6] & (1L << bit)) == 0)
+                return false;
+        }
+        return true;
+    }
+
+    public void write(DataOutput out) throws IOException {
+        out.writeByte(hashes);
+        out.writeInt(bits.length);
+        for (long word : bits)
+            out.writeLong(word);
+    }
+
+    public static BloomFilter read(DataInput in) throws IOException {
+        int hashes = in.readUnsignedByte();
+        int words = in.readInt();
+        if (words <= 0 || hashes == 0)
+            throw new IOException("Invalid Bloom filter");
+        var bits = new long[words];
+        for (int i = 0; i < words; ++i)
+            bits[i] = in.readLong();
+        return new BloomFilter(bits, hashes);
+    }
+}
@@ -0,0 +1,135 @@
+package edu.westminstercollege.cs.jade.util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Enumerates the classes found at a location: a .jar/.zip file, a directory tree, a single .class file, or the
+ * running JDK's modules ("jrt:/"). The streams returned are backed by a list of entry names, so they split well when
+ * made parallel; class bytes are only read as entries are consumed.
+ */
+public final class ClassEntries {
+
+    public static final String JRT = "jrt:/";
+
+    private ClassEntries() {}
+
+    /**
+     * A single class. {@code location} is the jar, directory or module the class came from; {@code name} is its
+     * internal name (e.g. {@code java/lang/String}).
+     */
+    public record Entry(String location, String name, byte[] bytes) {
+
+        public ByteBuffer buffer() {
+            return ByteBuffer.wrap(bytes);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Entry[location=%s, name=%s, bytes=byte[%d]]", location, name, bytes.length);
+        }
+    }
+
+    /**
+     * Returns a stream of the classes at the given location. The stream must be closed after use.
+     */
+    public static Stream<Entry> stream(String location) throws IOException {
+        if (location.equals(JRT) || location.equals("jrt:"))
+            return jrtStream();
+
+        var path = Path.of(location);
+        if (Files.isDirectory(path))
+            return directoryStream(path);
+        if (location.endsWith(".class"))
+            return Stream.of(new Entry(path.getParent() == null ? "." : path.getParent().toString(),
+                    stripClassSuffix(path.getFileName().toString()), Files.readAllBytes(path)));
+        return jarStream(path);
+    }
+
+    private static Stream<Entry> jarStream(Path path) throws IOException {
+        var zip = new ZipFile(path.toFile());
+        List<ZipEntry> entries = zip.stream()
+                .filter(e -> isClassName(e.getName()))
+                .map(e -> (ZipEntry)e)
+                .toList();
+
+        var location = path.toString();
+        return entries.stream()
+                .map(e -> {
+                    // ZipFile is safe for concurrent use, so this works on parallel streams as well
+                    try (var in = zip.getInputStream(e)) {
+                        return new Entry(location, stripClassSuffix(e.getName()), in.readAllBytes());
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                })
+                .onClose(() -> {
+                    try {
+                        zip.close();
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                });
+    }
+
+    private static Stream<Entry> directoryStream(Path root) throws IOException {
+        List<Path> files;
+        try (var walk = Files.walk(root)) {
+            files = walk.filter(Files::isRegularFile)
+                    .filter(p -> isClassName(root.relativize(p).toString()))
+                    .toList();
+        }
+
+        var location = root.toString();
+        return files.stream()
+                .map(p -> {
+                    var name = root.relativize(p).toString().replace(p.getFileSystem().getSeparator(), "/");
+                    try {
+                        return new Entry(location, stripClassSuffix(name), Files.readAllBytes(p));
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                });
+    }
+
+    private static Stream<Entry> jrtStream() throws IOException {
+        var modules = FileSystems.getFileSystem(URI.create(JRT)).getPath("/modules");
+        List<Path> files;
+        try (var walk = Files.walk(modules)) {
+            files = walk.filter(Files::isRegularFile)
+                    .filter(p -> p.getNameCount() > 2 && isClassName(p.subpath(2, p.getNameCount()).toString()))
+                    .toList();
+        }
+
+        return files.stream()
+                .map(p -> {
+                    var module = p.getName(1).toString();
+                    var name = p.subpath(2, p.getNameCount()).toString();
+                    try {
+                        return new Entry(module, stripClassSuffix(name), Files.readAllBytes(p));
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                });
+    }
+
+    private static boolean isClassName(String name) {
+        return name.endsWith(".class")
+                && !name.startsWith("META-INF/")
+                && !name.endsWith("module-info.class")
+                && !name.endsWith("package-info.class");
+    }
+
+    private static String stripClassSuffix(String name) {
+        return name.substring(0, name.length() - ".class".length());
+    }
+}
@@ -0,0 +1,87 @@
+package edu.westminstercollege.cs.jade.util;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A fast, non-cryptographic 64-bit hash. Not suitable for anything security-related, but good enough to key caches
+ * and to compare classes and methods by content.
+ */
+public final class Hash64 {
+
+    private static final long SEED = 0x9E37_79B9_7F4A_7C15L;
+    private static final long M1 = 0x87C3_7B91_1142_53D5L;
+    private static final long M2 = 0x4CF5_AD43_2745_937FL;
+
+    private long h = SEED;
+    private long length = 0;
+
+    public Hash64 putByte(int b) {
+        return putLong(b & 0xff);
+    }
+
+    public Hash64 putInt(int n) {
+        return putLong(n & 0xffff_ffffL);
+    }
+
+    public Hash64 putLong(long n) {
+        h ^= Long.rotateLeft(n * M1, 31) * M2;
+        h = Long.rotateLeft(h, 27) * 5 + 0x52DC_E729;
+        length += 8;
+        return this;
+    }
+
+    public Hash64 putString(String s) {
+        putBytes(ByteBuffer.wrap(s.getBytes(StandardCharsets.UTF_8)));
+        return this;
+    }
+
+    public Hash64 putBytes(byte[] bytes) {
+        return putBytes(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Hashes the remaining bytes of the buffer without changing its position.
+     */
+    public Hash64 putBytes(ByteBuffer bytes) {
+        var b = bytes.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int n = b.remaining();
+        while (b.remaining() >= 8)
+            putLong(b.getLong());
+
+        long tail = 0;
+        for (int shift = 0; b.hasRemaining(); shift += 8)
+            tail |= (b.get() & 0xffL) << shift;
+        putLong(tail);
+
+        // Mix in the length so that buffers differing only by trailing zero bytes don't collide
+        putLong(n);
+        return this;
+    }
+
+    public long get() {
+        return mix(h ^ length);
+    }
+
+    public static long of(ByteBuffer bytes) {
+        return new Hash64().putBytes(bytes).get();
+    }
+
+    public static long of(byte[] bytes) {
+        return new Hash64().putBytes(bytes).get();
+    }
+
+    public static String toHex(long hash) {
+        return String.format("%016x", hash);
+    }
+
+    private static long mix(long k) {
+        k ^= k >>> 33;
+        k *= 0xFF51_AFD7_ED55_8CCDL;
+        k ^= k >>> 33;
+        k *= 0xC4CE_B9FE_1A85_EC53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
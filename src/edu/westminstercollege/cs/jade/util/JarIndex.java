@@ -0,0 +1,160 @@
+package edu.westminstercollege.cs.jade.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Random access to the entries of a jar by name. The jar is memory-mapped and its central directory read once into a
+ * name → offset table, so looking up an entry costs a hash lookup and reading it touches only that entry's bytes.
+ * Safe for concurrent use.
+ *
+ * <p>Only stored and deflated entries are supported, and not ZIP64 archives, which covers jars written by the JDK's
+ * tools and by the usual build plugins.</p>
+ */
+public final class JarIndex implements AutoCloseable {
+
+    private static final int END_SIGNATURE = 0x0605_4b50;
+    private static final int CENTRAL_SIGNATURE = 0x0201_4b50;
+    private static final int LOCAL_SIGNATURE = 0x0403_4b50;
+    private static final int END_SIZE = 22;
+    private static final int CENTRAL_SIZE = 46;
+    private static final int LOCAL_SIZE = 30;
+
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final ByteBuffer map;
+
+    // Indexed by entry number
+    private final int[] localOffsets;
+    private final int[] compressedSizes;
+    private final int[] sizes;
+    private final short[] methods;
+    private final Map<String, Integer> entries;
+
+    private JarIndex(Path path, FileChannel channel, ByteBuffer map) throws IOException {
+        this.path = path;
+        this.channel = channel;
+        this.map = map;
+
+        int end = findEndRecord();
+        int count = map.getShort(end + 10) & 0xffff;
+        int directoryOffset = map.getInt(end + 16);
+        if (count == 0xffff || directoryOffset == -1)
+            throw new ZipException(path + ": ZIP64 archives are not supported");
+
+        localOffsets = new int[count];
+        compressedSizes = new int[count];
+        sizes = new int[count];
+        methods = new short[count];
+        entries = new HashMap<>(count * 2);
+
+        int p = directoryOffset;
+        for (int i = 0; i < count; ++i) {
+            if (p + CENTRAL_SIZE > map.limit() || map.getInt(p) != CENTRAL_SIGNATURE)
+                throw new ZipException(path + ": corrupt central directory");
+            methods[i] = map.getShort(p + 10);
+            compressedSizes[i] = map.getInt(p + 20);
+            sizes[i] = map.getInt(p + 24);
+            int nameLength = map.getShort(p + 28) & 0xffff;
+            int extraLength = map.getShort(p + 30) & 0xffff;
+            int commentLength = map.getShort(p + 32) & 0xffff;
+            localOffsets[i] = map.getInt(p + 42);
+
+            var name = new byte[nameLength];
+            map.get(p + CENTRAL_SIZE, name);
+            entries.putIfAbsent(new String(name, StandardCharsets.UTF_8), i);
+            p += CENTRAL_SIZE + nameLength + extraLength + commentLength;
+        }
+    }
+
+    public static JarIndex open(Path path) throws IOException {
+        var channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new ZipException(path + ": archives over 2GB are not supported");
+            var map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+            return new JarIndex(path, channel, map);
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    public boolean contains(String name) {
+        return entries.containsKey(name);
+    }
+
+    /**
+     * Returns the contents of an entry, or null if the jar has no entry with that name.
+     */
+    public byte[] read(String name) throws IOException {
+        var index = entries.get(name);
+        if (index == null)
+            return null;
+
+        int local = localOffsets[index];
+        if (local < 0 || local + LOCAL_SIZE > map.limit() || map.getInt(local) != LOCAL_SIGNATURE)
+            throw new ZipException(path + ": corrupt local header for " + name);
+        // The local header's name and extra field lengths can differ from the central directory's
+        int data = local + LOCAL_SIZE + (map.getShort(local + 26) & 0xffff) + (map.getShort(local + 28) & 0xffff);
+        int compressedSize = compressedSizes[index];
+        if (data + compressedSize > map.limit())
+            throw new ZipException(path + ": truncated entry " + name);
+
+        var bytes = new byte[sizes[index]];
+        switch (methods[index]) {
+            case STORED -> map.get(data, bytes);
+            case DEFLATED -> {
+                var inflater = new Inflater(true);
+                try {
+                    inflater.setInput(map.slice(data, compressedSize));
+                    int n = 0;
+                    while (n < bytes.length && !inflater.finished()) {
+                        int read = inflater.inflate(bytes, n, bytes.length - n);
+                        if (read == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                            throw new ZipException(path + ": truncated deflate data for " + name);
+                        n += read;
+                    }
+                } catch (DataFormatException ex) {
+                    throw new ZipException(path + ": " + name + ": " + ex.getMessage());
+                } finally {
+                    inflater.end();
+                }
+            }
+            default -> throw new ZipException(path + ": unsupported compression method " + methods[index] + " for " + name);
+        }
+        return bytes;
+    }
+
+    private int findEndRecord() throws ZipException {
+        // The end record is followed only by a comment of at most 64K
+        int last = map.limit() - END_SIZE;
+        for (int p = last; p >= 0 && p >= last - 0xffff; --p) {
+            if (map.getInt(p) == END_SIGNATURE)
+                return p;
+        }
+        throw new ZipException(path + ": not a zip file");
+    }
+}
@@ -0,0 +1,136 @@
+package edu.westminstercollege.cs.jade.util;
+
+import java.io.PrintWriter;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * A small streaming JSON writer, enough for the reports the analysis tools produce.
+ */
+public class JsonWriter {
+
+    private final PrintWriter out;
+    private final Deque<Boolean> firstInScope = new ArrayDeque<>();
+    private boolean afterName = false;
+
+    public JsonWriter(PrintWriter out) {
+        this.out = out;
+    }
+
+    public JsonWriter beginObject() {
+        beforeValue();
+        out.print('{');
+        firstInScope.push(true);
+        return this;
+    }
+
+    public JsonWriter endObject() {
+        firstInScope.pop();
+        out.print('}');
+        return this;
+    }
+
+    public JsonWriter beginArray() {
+        beforeValue();
+        out.print('[');
+        firstInScope.push(true);
+        return this;
+    }
+
+    public JsonWriter endArray() {
+        firstInScope.pop();
+        out.print(']');
+        return this;
+    }
+
+    public JsonWriter name(String name) {
+        beforeValue();
+        writeString(name);
+        out.print(':');
+        afterName = true;
+        return this;
+    }
+
+    public JsonWriter value(String s) {
+        beforeValue();
+        if (s == null)
+            out.print("null");
+        else
+            writeString(s);
+        return this;
+    }
+
+    public JsonWriter value(long n) {
+        beforeValue();
+        out.print(n);
+        return this;
+    }
+
+    public JsonWriter value(double d) {
+        beforeValue();
+        if (Double.isFinite(d))
+            out.print(d);
+        else
+            out.print("null");
+        return this;
+    }
+
+    public JsonWriter value(boolean b) {
+        beforeValue();
+        out.print(b);
+        return this;
+    }
+
+    public JsonWriter property(String name, String value) {
+        return name(name).value(value);
+    }
+
+    public JsonWriter property(String name, long value) {
+        return name(name).value(value);
+    }
+
+    public JsonWriter property(String name, double value) {
+        return name(name).value(value);
+    }
+
+    public JsonWriter property(String name, boolean value) {
+        return name(name).value(value);
+    }
+
+    public void flush() {
+        out.flush();
+    }
+
+    private void beforeValue() {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        if (!firstInScope.isEmpty()) {
+            if (!firstInScope.pop())
+                out.print(',');
+            firstInScope.push(false);
+        }
+    }
+
+    private void writeString(String s) {
+        out.print('"');
+        for (int i = 0; i < s.length(); ++i) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"' -> out.print("\\\"");
+                case '\\' -> out.print("\\\\");
+                case '\n' -> out.print("\\n");
+                case '\r' -> out.print("\\r");
+                case '\t' -> out.print("\\t");
+                default -> {
+                    if (c < 0x20)
+                        out.printf("\\u%04x", (int)c);
+                    else
+                        out.print(c);
+                }
+            }
+        }
+        out.print('"');
+    }
+}
@@ -0,0 +1,118 @@
+package edu.westminstercollege.cs.jade.util;
+
+import java.util.Arrays;
+
+/**
+ * An open-addressing map from long to int, for counting without boxing. Keys may be any value except
+ * {@link Long#MIN_VALUE}, which marks empty slots. Not thread-safe.
+ */
+public class LongIntHashMap {
+
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private long[] keys;
+    private int[] values;
+    private int size = 0;
+
+    public LongIntHashMap() {
+        this(16);
+    }
+
+    public LongIntHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2) - 1) << 1;
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int get(long key, int defaultValue) {
+        int slot = find(key);
+        return keys[slot] == EMPTY ? defaultValue : values[slot];
+    }
+
+    public boolean containsKey(long key) {
+        return keys[find(key)] != EMPTY;
+    }
+
+    public void put(long key, int value) {
+        int slot = find(key);
+        if (keys[slot] == EMPTY) {
+            keys[slot] = key;
+            ++size;
+            values[slot] = value;
+            growIfNeeded();
+        } else
+            values[slot] = value;
+    }
+
+    /**
+     * Adds {@code delta} to the value for {@code key} (treating a missing key as 0) and returns the new value.
+     */
+    public int add(long key, int delta) {
+        int slot = find(key);
+        if (keys[slot] == EMPTY) {
+            keys[slot] = key;
+            values[slot] = delta;
+            ++size;
+            growIfNeeded();
+            return delta;
+        }
+        return values[slot] += delta;
+    }
+
+    public interface Consumer {
+        void accept(long key, int value);
+    }
+
+    public void forEach(Consumer consumer) {
+        for (int i = 0; i < keys.length; ++i)
+            if (keys[i] != EMPTY)
+                consumer.accept(keys[i], values[i]);
+    }
+
+    /**
+     * Adds every count in {@code other} into this map.
+     */
+    public void addAll(LongIntHashMap other) {
+        other.forEach(this::add);
+    }
+
+    private int find(long key) {
+        if (key == EMPTY)
+            throw new IllegalArgumentException("Key not supported: " + key);
+        int mask = keys.length - 1;
+        int slot = (int)mix(key) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key)
+            slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    private void growIfNeeded() {
+        if (size * 4 < keys.length * 3)
+            return;
+
+        var oldKeys = keys;
+        var oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldValues.length * 2];
+        Arrays.fill(keys, EMPTY);
+        for (int i = 0; i < oldKeys.length; ++i) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = find(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private static long mix(long k) {
+        k ^= k >>> 33;
+        k *= 0xFF51_AFD7_ED55_8CCDL;
+        k ^= k >>> 33;
+        return k;
+    }
+}
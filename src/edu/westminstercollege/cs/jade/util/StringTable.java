@@ -0,0 +1,70 @@
+package edu.westminstercollege.cs.jade.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.TreeSet;
+
+/**
+ * An immutable, sorted dictionary of strings, for indexes that store strings as ints. Ids are positions in sorted
+ * order, so comparing ids compares the strings, and lookups are binary searches.
+ */
+public final class StringTable {
+
+    private final String[] strings;
+
+    private StringTable(String[] strings) {
+        this.strings = strings;
+    }
+
+    public static StringTable of(Collection<String> strings) {
+        return new StringTable(new TreeSet<>(strings).toArray(new String[0]));
+    }
+
+    public int size() {
+        return strings.length;
+    }
+
+    public String get(int id) {
+        return strings[id];
+    }
+
+    /**
+     * Returns the id of a string, or -1 if it isn't in the table.
+     */
+    public int indexOf(String s) {
+        int id = Arrays.binarySearch(strings, s);
+        return id < 0 ? -1 : id;
+    }
+
+    /**
+     * Returns the ids of all strings starting with a prefix, as a range [first, last + 1).
+     */
+    public int[] prefixRange(String prefix) {
+        int start = Arrays.binarySearch(strings, prefix);
+        if (start < 0)
+            start = -start - 1;
+        int end = start;
+        while (end < strings.length && strings[end].startsWith(prefix))
+            ++end;
+        return new int[] { start, end };
+    }
+
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(strings.length);
+        for (var s : strings)
+            out.writeUTF(s);
+    }
+
+    public static StringTable read(DataInput in) throws IOException {
+        int count = in.readInt();
+        if (count < 0)
+            throw new IOException("Invalid string table size " + count);
+        var strings = new String[count];
+        for (int i = 0; i < count; ++i)
+            strings[i] = in.readUTF();
+        return new StringTable(strings);
+    }
+}